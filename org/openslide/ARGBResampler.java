@@ -0,0 +1,268 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+// Resamples premultiplied ARGB images, such as those returned by
+// readRegion.  Filtering is separable: each source row is filtered
+// horizontally into per-channel fixed-point rows, which are then combined
+// vertically.  The inner loops run over flat int arrays so the JIT can
+// vectorize them.
+public final class ARGBResampler {
+    public enum Filter {
+        // average of whole source pixels; each output pixel gets its own
+        // disjoint set of source pixels
+        BOX,
+        // average weighted by the area of each source pixel covered by
+        // the output pixel
+        AREA,
+        // linear interpolation between the two nearest source pixels in
+        // each direction
+        BILINEAR
+    }
+
+    // fixed-point precision of filter weights
+    private static final int WEIGHT_BITS = 12;
+
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    // bits dropped after the horizontal pass, to keep the vertical pass
+    // within an int
+    private static final int INTERMEDIATE_SHIFT = 4;
+
+    private static final int FINAL_SHIFT = 2 * WEIGHT_BITS
+            - INTERMEDIATE_SHIFT;
+
+    // filter taps for each output pixel along one axis
+    private static final class Taps {
+        final int start[];
+
+        final int count[];
+
+        // count[i] weights for each output pixel, at offset i * maxCount
+        final int weights[];
+
+        final int maxCount;
+
+        Taps(int start[], int count[], int weights[], int maxCount) {
+            this.start = start;
+            this.count = count;
+            this.weights = weights;
+            this.maxCount = maxCount;
+        }
+    }
+
+    private ARGBResampler() {
+    }
+
+    public static void resample(int src[], int srcW, int srcH, int dest[],
+            int dw, int dh, Filter filter) {
+        checkSize(srcW, srcH, dw, dh);
+        if ((long) srcW * srcH > src.length
+                || (long) dw * dh > dest.length) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "Array is smaller than the image");
+        }
+        resample(MemorySegment.ofArray(src), srcW, srcH,
+                MemorySegment.ofArray(dest), dw, dh, filter);
+    }
+
+    // src and dest hold 32-bit pixels in native byte order
+    public static void resample(MemorySegment src, int srcW, int srcH,
+            MemorySegment dest, int dw, int dh, Filter filter) {
+        checkSize(srcW, srcH, dw, dh);
+        if ((long) srcW * srcH * Integer.BYTES > src.byteSize()
+                || (long) dw * dh * Integer.BYTES > dest.byteSize()) {
+            throw new IndexOutOfBoundsException(
+                    "Segment is smaller than the image");
+        }
+        Taps xTaps = taps(srcW, dw, filter);
+        Taps yTaps = taps(srcH, dh, filter);
+
+        // horizontally filtered rows, in a ring indexed by source row
+        int ring = yTaps.maxCount;
+        int rows[][] = new int[ring][4 * dw];
+        int rowIndex[] = new int[ring];
+        Arrays.fill(rowIndex, -1);
+        int line[] = new int[srcW];
+        int acc[] = new int[4 * dw];
+
+        for (int oy = 0; oy < dh; oy++) {
+            Arrays.fill(acc, 0);
+            int y0 = yTaps.start[oy];
+            int n = yTaps.count[oy];
+            for (int t = 0; t < n; t++) {
+                int sy = y0 + t;
+                int slot = sy % ring;
+                if (rowIndex[slot] != sy) {
+                    MemorySegment.copy(src, ValueLayout.JAVA_INT,
+                            (long) sy * srcW * Integer.BYTES, line, 0, srcW);
+                    filterRow(line, xTaps, rows[slot], dw);
+                    rowIndex[slot] = sy;
+                }
+                int wy = yTaps.weights[oy * yTaps.maxCount + t];
+                int row[] = rows[slot];
+                for (int i = 0; i < acc.length; i++) {
+                    acc[i] += row[i] * wy;
+                }
+            }
+            long base = (long) oy * dw;
+            int round = 1 << (FINAL_SHIFT - 1);
+            for (int ox = 0; ox < dw; ox++) {
+                int a = clamp((acc[ox] + round) >> FINAL_SHIFT, 255);
+                int r = clamp((acc[dw + ox] + round) >> FINAL_SHIFT, a);
+                int g = clamp((acc[2 * dw + ox] + round) >> FINAL_SHIFT, a);
+                int b = clamp((acc[3 * dw + ox] + round) >> FINAL_SHIFT, a);
+                dest.setAtIndex(ValueLayout.JAVA_INT, base + ox,
+                        a << 24 | r << 16 | g << 8 | b);
+            }
+        }
+    }
+
+    // filter one source row into planar A, R, G, B channels
+    private static void filterRow(int line[], Taps taps, int out[], int dw) {
+        int shiftRound = 1 << (INTERMEDIATE_SHIFT - 1);
+        for (int ox = 0; ox < dw; ox++) {
+            int x0 = taps.start[ox];
+            int n = taps.count[ox];
+            int w = ox * taps.maxCount;
+            int a = 0;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            for (int t = 0; t < n; t++) {
+                int p = line[x0 + t];
+                int wx = taps.weights[w + t];
+                a += (p >>> 24) * wx;
+                r += ((p >> 16) & 0xff) * wx;
+                g += ((p >> 8) & 0xff) * wx;
+                b += (p & 0xff) * wx;
+            }
+            out[ox] = (a + shiftRound) >> INTERMEDIATE_SHIFT;
+            out[dw + ox] = (r + shiftRound) >> INTERMEDIATE_SHIFT;
+            out[2 * dw + ox] = (g + shiftRound) >> INTERMEDIATE_SHIFT;
+            out[3 * dw + ox] = (b + shiftRound) >> INTERMEDIATE_SHIFT;
+        }
+    }
+
+    private static Taps taps(int srcLen, int dstLen, Filter filter) {
+        double scale = (double) srcLen / dstLen;
+        int start[] = new int[dstLen];
+        int count[] = new int[dstLen];
+        double raw[][] = new double[dstLen][];
+        int maxCount = 1;
+        for (int i = 0; i < dstLen; i++) {
+            switch (filter) {
+            case BOX: {
+                int s = boxStart(i, srcLen, dstLen);
+                int e = i + 1 < dstLen ? boxStart(i + 1, srcLen, dstLen) :
+                        srcLen;
+                e = Math.max(e, s + 1);
+                start[i] = s;
+                raw[i] = new double[e - s];
+                Arrays.fill(raw[i], 1);
+                break;
+            }
+            case AREA: {
+                double lo = i * scale;
+                double hi = Math.min(srcLen, (i + 1) * scale);
+                int s = Math.min((int) lo, srcLen - 1);
+                int e = Math.max((int) Math.ceil(hi), s + 1);
+                start[i] = s;
+                raw[i] = new double[e - s];
+                for (int j = s; j < e; j++) {
+                    raw[i][j - s] = Math.max(Math.min(hi, j + 1)
+                            - Math.max(lo, j), 0);
+                }
+                break;
+            }
+            case BILINEAR: {
+                double center = (i + 0.5) * scale - 0.5;
+                center = Math.max(0, Math.min(srcLen - 1, center));
+                int s = Math.min((int) center, Math.max(srcLen - 2, 0));
+                double frac = center - s;
+                start[i] = s;
+                raw[i] = srcLen > 1 ? new double[] {1 - frac, frac} :
+                        new double[] {1};
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown filter "
+                        + filter);
+            }
+            count[i] = raw[i].length;
+            maxCount = Math.max(maxCount, count[i]);
+        }
+
+        // normalize to fixed point by the largest remainder method: round
+        // every weight down, then give the units lost to rounding to the
+        // taps with the largest remainders.  Weights sum to exactly
+        // WEIGHT_ONE and are never negative, however many taps there are.
+        int weights[] = new int[dstLen * maxCount];
+        for (int i = 0; i < dstLen; i++) {
+            int n = count[i];
+            double sum = 0;
+            for (double w : raw[i]) {
+                sum += w;
+            }
+            // remainder in the high bits, tap in the low bits
+            long order[] = new long[n];
+            int total = 0;
+            for (int t = 0; t < n; t++) {
+                double exact = raw[i][t] / sum * WEIGHT_ONE;
+                int w = (int) exact;
+                weights[i * maxCount + t] = w;
+                total += w;
+                order[t] = (long) ((exact - w) * (1 << 30)) << 32 | t;
+            }
+            Arrays.sort(order);
+            for (int k = 0; k < WEIGHT_ONE - total; k++) {
+                weights[i * maxCount + (int) order[n - 1 - k % n]]++;
+            }
+        }
+        return new Taps(start, count, weights, maxCount);
+    }
+
+    // first source pixel of output pixel i for the box filter, leaving at
+    // least one source pixel for each later output pixel
+    private static int boxStart(int i, int srcLen, int dstLen) {
+        long pos = (long) i * srcLen / dstLen;
+        if (srcLen >= dstLen) {
+            pos = Math.min(pos, srcLen - (dstLen - i));
+        }
+        return (int) pos;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    private static void checkSize(int srcW, int srcH, int dw, int dh) {
+        if (srcW <= 0 || srcH <= 0 || dw <= 0 || dh <= 0) {
+            throw new IllegalArgumentException(
+                    "Image dimensions must be positive");
+        }
+    }
+}
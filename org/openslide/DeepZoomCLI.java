@@ -0,0 +1,79 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class DeepZoomCLI {
+    public static void main(String args[]) throws IOException {
+        if (args.length < 2 || args.length > 5) {
+            System.out.printf("usage: DeepZoomCLI slide output-dir "
+                    + "[format [quality [threads]]]\n");
+            return;
+        }
+
+        File slide = new File(args[0]);
+        String format = args.length >= 3 ? args[2] : "jpeg";
+        float quality = args.length >= 4 ? Float.parseFloat(args[3]) : 0.75f;
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length == 5) {
+            threads = Integer.parseInt(args[4]);
+        }
+        String name = slide.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+
+        try (OpenSlide os = new OpenSlide(slide)) {
+            DeepZoomExporter exporter = new DeepZoomExporter(
+                    new DeepZoomGenerator(os), format, quality, threads,
+                    threads);
+            Thread progress = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(1000);
+                        System.err.printf("\r%.1f%%, %.0f tiles/s",
+                                100 * exporter.getProgress(),
+                                exporter.getTilesPerSecond());
+                    }
+                } catch (InterruptedException e) {
+                    // done
+                }
+            }, "openslide-export-progress");
+            progress.setDaemon(true);
+            progress.start();
+            try {
+                exporter.export(Path.of(args[1]), name);
+            } finally {
+                progress.interrupt();
+            }
+            System.err.printf("\rwrote %d tiles (%d MiB), skipped %d, "
+                    + "%.0f tiles/s\n", exporter.getTilesWritten(),
+                    exporter.getBytesWritten() >> 20,
+                    exporter.getTilesSkipped(),
+                    exporter.getTilesPerSecond());
+        }
+    }
+}
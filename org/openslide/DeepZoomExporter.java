@@ -0,0 +1,614 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+// Writes a complete Deep Zoom pyramid for a DeepZoomGenerator.  Tiles of
+// the highest level are decoded from the slide in parallel, two tile rows
+// at a time.  Every lower level is built by 2x2 averaging of the level
+// above, one tile row at a time, so memory use is proportional to the
+// width of the slide rather than its area.  Finished tiles pass through a
+// bounded queue to a pool of encoder threads, which block the decoders
+// when they fall behind.
+//
+// Tiles are written to a temporary file and renamed into place, and the
+// .dzi file is written last.  An interrupted export can be resumed by
+// running it again: existing tiles are not re-encoded, and existing tiles
+// in the highest level are read back rather than decoded from the slide.
+// An export whose .dzi file exists is considered complete.
+public final class DeepZoomExporter {
+    private static final Job END = new Job(null, null);
+
+    private static final class Job {
+        final Path file;
+
+        final BufferedImage image;
+
+        Job(Path file, BufferedImage image) {
+            this.file = file;
+            this.image = image;
+        }
+    }
+
+    // core pixels of a derived level, accumulated one tile row at a time
+    private final class Level {
+        final int level;
+
+        final int width;
+
+        final int height;
+
+        final int columns;
+
+        final int rows;
+
+        final Level below;
+
+        // the last three completed tile rows, indexed by row % 3
+        final int buffers[][] = new int[3][];
+
+        int row;
+
+        int filled;
+
+        // unpaired line from the level above
+        int carry[];
+
+        Level(int level, Level below) {
+            this.level = level;
+            this.below = below;
+            width = (int) gen.getLevelWidth(level);
+            height = (int) gen.getLevelHeight(level);
+            columns = (int) gen.getTileColumns(level);
+            rows = (int) gen.getTileRows(level);
+        }
+
+        int rowHeight(int r) {
+            return Math.min(tileSize, height - r * tileSize);
+        }
+
+        // add lines from the level above, which has width srcWidth
+        void addLines(int src[], int srcWidth, int lines, boolean last)
+                throws IOException, InterruptedException {
+            int i = 0;
+            if (carry != null && lines > 0) {
+                addLine(carry, 0, src, 0, srcWidth);
+                carry = null;
+                i = 1;
+            }
+            for (; i + 1 < lines; i += 2) {
+                addLine(src, i * srcWidth, src, (i + 1) * srcWidth,
+                        srcWidth);
+            }
+            if (i < lines) {
+                carry = Arrays.copyOfRange(src, i * srcWidth,
+                        (i + 1) * srcWidth);
+            }
+            if (last && carry != null) {
+                int line[] = carry;
+                carry = null;
+                addLine(line, 0, line, 0, srcWidth);
+            }
+        }
+
+        private void addLine(int a[], int aOff, int b[], int bOff,
+                int srcWidth) throws IOException, InterruptedException {
+            int buf[] = buffers[row % 3];
+            if (buf == null) {
+                buf = new int[width * tileSize];
+                buffers[row % 3] = buf;
+            }
+            int off = filled * width;
+            for (int x = 0; x < width; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, srcWidth - 1);
+                buf[off + x] = average(a[aOff + x0], a[aOff + x1],
+                        b[bOff + x0], b[bOff + x1]);
+            }
+            if (++filled == rowHeight(row)) {
+                completeRow();
+            }
+        }
+
+        private void completeRow() throws IOException, InterruptedException {
+            boolean last = row == rows - 1;
+            if (row > 0) {
+                emitRow(row - 1);
+            }
+            if (last) {
+                emitRow(row);
+            }
+            if (below != null) {
+                below.addLines(buffers[row % 3], width, rowHeight(row),
+                        last);
+            }
+            row++;
+            filled = 0;
+        }
+
+        private void emitRow(int r) throws IOException, InterruptedException {
+            // lines available from the rows on either side
+            int minY = Math.max(0, (r - 1) * tileSize);
+            int maxY = Math.min(height, (r + 2) * tileSize) - 1;
+            for (int c = 0; c < columns; c++) {
+                Path file = tilePath(level, c, r);
+                if (Files.exists(file)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                int ol = c != 0 ? overlap : 0;
+                int ot = r != 0 ? overlap : 0;
+                int tw = Math.min(tileSize, width - c * tileSize) + ol
+                        + (c != columns - 1 ? overlap : 0);
+                int th = Math.min(tileSize, height - r * tileSize) + ot
+                        + (r != rows - 1 ? overlap : 0);
+                BufferedImage img = new BufferedImage(tw, th,
+                        BufferedImage.TYPE_INT_RGB);
+                int dest[] = ((DataBufferInt) img.getRaster()
+                        .getDataBuffer()).getData();
+                for (int ty = 0; ty < th; ty++) {
+                    int y = clamp(r * tileSize - ot + ty, minY, maxY);
+                    int src[] = buffers[(y / tileSize) % 3];
+                    int off = (y % tileSize) * width;
+                    for (int tx = 0; tx < tw; tx++) {
+                        int x = clamp(c * tileSize - ol + tx, 0, width - 1);
+                        dest[ty * tw + tx] = src[off + x];
+                    }
+                }
+                encode(file, img);
+            }
+        }
+    }
+
+    private final DeepZoomGenerator gen;
+
+    private final String format;
+
+    private final float quality;
+
+    private final int decodeThreads;
+
+    private final int encodeThreads;
+
+    private final int tileSize;
+
+    private final int overlap;
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private final AtomicLong blank = new AtomicLong();
+
+    private volatile TissueMask mask;
+
+    private volatile double minCoverage;
+
+    private final AtomicReference<IOException> encodeError =
+            new AtomicReference<>();
+
+    private volatile long startTime;
+
+    private volatile long endTime;
+
+    private BlockingQueue<Job> queue;
+
+    private Path tileDir;
+
+    public DeepZoomExporter(DeepZoomGenerator gen, String format) {
+        this(gen, format, 0.75f, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    // format is an ImageIO format name such as "jpeg" or "png", and is
+    // used as the tile file extension; quality applies to JPEG
+    public DeepZoomExporter(DeepZoomGenerator gen, String format,
+            float quality, int decodeThreads, int encodeThreads) {
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            throw new IllegalArgumentException("Unsupported format: "
+                    + format);
+        }
+        if (quality < 0 || quality > 1) {
+            throw new IllegalArgumentException(
+                    "quality must be between 0 and 1");
+        }
+        if (decodeThreads <= 0 || encodeThreads <= 0) {
+            throw new IllegalArgumentException(
+                    "thread counts must be positive");
+        }
+        this.gen = gen;
+        this.format = format;
+        this.quality = quality;
+        this.decodeThreads = decodeThreads;
+        this.encodeThreads = encodeThreads;
+        tileSize = gen.getTileSize();
+        overlap = gen.getOverlap();
+    }
+
+    // highest-level tiles with less tissue coverage than minCoverage are
+    // filled with the background color instead of being read from the
+    // slide; null to read every tile
+    public void setTissueMask(TissueMask mask, double minCoverage) {
+        this.mask = mask;
+        this.minCoverage = minCoverage;
+    }
+
+    // writes dir/name.dzi and dir/name_files; not reentrant
+    public synchronized void export(Path dir, String name)
+            throws IOException {
+        Path dzi = dir.resolve(name + ".dzi");
+        tileDir = dir.resolve(name + "_files");
+        written.set(0);
+        skipped.set(0);
+        bytesWritten.set(0);
+        blank.set(0);
+        encodeError.set(null);
+        startTime = System.nanoTime();
+        endTime = 0;
+        if (Files.exists(dzi)) {
+            skipped.set(gen.getTileCount());
+            endTime = System.nanoTime();
+            return;
+        }
+
+        int top = gen.getLevelCount() - 1;
+        if (gen.getLevelWidth(top) * tileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Slide too wide to export");
+        }
+        for (int level = 0; level <= top; level++) {
+            Files.createDirectories(tileDir.resolve(Integer.toString(level)));
+        }
+        Level below = null;
+        for (int level = 0; level < top; level++) {
+            below = new Level(level, below);
+        }
+
+        queue = new ArrayBlockingQueue<>(4 * encodeThreads);
+        ExecutorService decoders = Executors.newFixedThreadPool(
+                decodeThreads, threadFactory("openslide-export-decode-"));
+        ExecutorService encoders = Executors.newFixedThreadPool(
+                encodeThreads, threadFactory("openslide-export-encode-"));
+        boolean done = false;
+        try {
+            for (int i = 0; i < encodeThreads; i++) {
+                encoders.execute(this::runEncoder);
+            }
+            exportTopLevel(top, below, decoders);
+            for (int i = 0; i < encodeThreads; i++) {
+                queue.put(END);
+            }
+            encoders.shutdown();
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            checkEncodeError();
+            done = true;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            decoders.shutdownNow();
+            if (!done) {
+                encoders.shutdownNow();
+            }
+            queue = null;
+        }
+
+        Path tmp = dzi.resolveSibling(dzi.getFileName() + ".tmp");
+        Files.writeString(tmp, gen.getDzi(format), StandardCharsets.UTF_8);
+        Files.move(tmp, dzi, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        endTime = System.nanoTime();
+    }
+
+    private void exportTopLevel(int top, Level below, ExecutorService decoders)
+            throws IOException, InterruptedException {
+        int width = (int) gen.getLevelWidth(top);
+        int height = (int) gen.getLevelHeight(top);
+        int columns = (int) gen.getTileColumns(top);
+        int rows = (int) gen.getTileRows(top);
+        // core pixels of the row being decoded and the row before it
+        int buffers[][] = new int[2][];
+        List<Future<?>> pending = null;
+        for (int r = 0; r <= rows; r++) {
+            List<Future<?>> futures = null;
+            if (r < rows) {
+                int row = r;
+                int buf[] = null;
+                if (below != null) {
+                    if (buffers[r % 2] == null) {
+                        buffers[r % 2] = new int[width * tileSize];
+                    }
+                    buf = buffers[r % 2];
+                }
+                int dest[] = buf;
+                futures = new ArrayList<>(columns);
+                for (int c = 0; c < columns; c++) {
+                    int col = c;
+                    futures.add(decoders.submit(() -> {
+                        decodeTile(top, col, row, dest, width);
+                        return null;
+                    }));
+                }
+            }
+            if (pending != null) {
+                await(pending);
+                checkEncodeError();
+                int prev = r - 1;
+                if (below != null) {
+                    below.addLines(buffers[prev % 2], width,
+                            Math.min(tileSize, height - prev * tileSize),
+                            prev == rows - 1);
+                }
+            }
+            pending = futures;
+        }
+    }
+
+    private void decodeTile(int level, int col, int row, int dest[],
+            int width) throws IOException, InterruptedException {
+        int ol = col != 0 ? overlap : 0;
+        int ot = row != 0 ? overlap : 0;
+        int cw = (int) Math.min(tileSize,
+                gen.getLevelWidth(level) - (long) col * tileSize);
+        int ch = (int) Math.min(tileSize,
+                gen.getLevelHeight(level) - (long) row * tileSize);
+        int tw = cw + ol + (col != gen.getTileColumns(level) - 1 ?
+                overlap : 0);
+        int th = ch + ot + (row != gen.getTileRows(level) - 1 ?
+                overlap : 0);
+
+        Path file = tilePath(level, col, row);
+        BufferedImage img = null;
+        if (Files.exists(file)) {
+            if (dest == null) {
+                skipped.incrementAndGet();
+                return;
+            }
+            try {
+                img = ImageIO.read(file.toFile());
+            } catch (IOException e) {
+                // decode it again
+            }
+            if (img != null && (img.getWidth() != tw
+                    || img.getHeight() != th)) {
+                img = null;
+            }
+            if (img != null) {
+                skipped.incrementAndGet();
+            }
+        }
+        if (img == null) {
+            img = isBackground(level, col, row) ? blankTile(tw, th) :
+                    gen.getTile(level, col, row);
+            encode(file, img);
+        }
+        if (dest != null) {
+            img.getRGB(ol, ot, cw, ch, dest, col * tileSize, width);
+        }
+    }
+
+    private boolean isBackground(int level, int col, int row) {
+        TissueMask m = mask;
+        if (m == null) {
+            return false;
+        }
+        DeepZoomGenerator.TileInfo info = gen.getTileInfo(level, col, row);
+        double downsample = gen.getOpenSlide().getLevelDownsample(
+                info.slideLevel);
+        return m.getCoverage(info.l0X, info.l0Y,
+                (long) Math.ceil(info.levelWidth * downsample),
+                (long) Math.ceil(info.levelHeight * downsample))
+                < minCoverage;
+    }
+
+    private BufferedImage blankTile(int w, int h) {
+        blank.incrementAndGet();
+        BufferedImage img = new BufferedImage(w, h,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(gen.getBackground());
+        g.fillRect(0, 0, w, h);
+        g.dispose();
+        return img;
+    }
+
+    private void encode(Path file, BufferedImage img)
+            throws InterruptedException {
+        queue.put(new Job(file, img));
+    }
+
+    private void runEncoder() {
+        try {
+            while (true) {
+                Job job = queue.take();
+                if (job == END) {
+                    return;
+                }
+                if (encodeError.get() != null) {
+                    // drain the queue without writing
+                    continue;
+                }
+                try {
+                    write(job);
+                } catch (IOException e) {
+                    encodeError.compareAndSet(null, e);
+                } catch (RuntimeException e) {
+                    encodeError.compareAndSet(null, new IOException(e));
+                }
+            }
+        } catch (InterruptedException e) {
+            // export aborted
+        }
+    }
+
+    private void write(Job job) throws IOException {
+        Path tmp = job.file.resolveSibling(job.file.getFileName() + ".tmp");
+        Iterator<ImageWriter> writers =
+                ImageIO.getImageWritersByFormatName(format);
+        ImageWriter writer = writers.next();
+        try (OutputStream out = Files.newOutputStream(tmp);
+                ImageOutputStream ios = ImageIO.createImageOutputStream(
+                out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && isJpeg()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(job.image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        bytesWritten.addAndGet(Files.size(tmp));
+        Files.move(tmp, job.file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        written.incrementAndGet();
+    }
+
+    private boolean isJpeg() {
+        return format.equalsIgnoreCase("jpeg")
+                || format.equalsIgnoreCase("jpg");
+    }
+
+    private void checkEncodeError() throws IOException {
+        IOException e = encodeError.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private Path tilePath(int level, long col, long row) {
+        return tileDir.resolve(Integer.toString(level)).resolve(col + "_"
+                + row + "." + format);
+    }
+
+    private static void await(List<Future<?>> futures)
+            throws IOException, InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // mean of four RGB pixels
+    private static int average(int a, int b, int c, int d) {
+        int r = ((a >> 16) & 0xff) + ((b >> 16) & 0xff) + ((c >> 16) & 0xff)
+                + ((d >> 16) & 0xff);
+        int g = ((a >> 8) & 0xff) + ((b >> 8) & 0xff) + ((c >> 8) & 0xff)
+                + ((d >> 8) & 0xff);
+        int bl = (a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff);
+        return 0xff000000 | ((r + 2) >> 2) << 16 | ((g + 2) >> 2) << 8
+                | ((bl + 2) >> 2);
+    }
+
+    public long getTileCount() {
+        return gen.getTileCount();
+    }
+
+    public long getTilesWritten() {
+        return written.get();
+    }
+
+    // tiles left over from a previous export
+    public long getTilesSkipped() {
+        return skipped.get();
+    }
+
+    // highest-level tiles filled with background because of the tissue
+    // mask
+    public long getTilesBlank() {
+        return blank.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    // fraction of tiles written or skipped
+    public double getProgress() {
+        return (double) (written.get() + skipped.get()) / getTileCount();
+    }
+
+    // tiles written per second since the export started
+    public double getTilesPerSecond() {
+        long start = startTime;
+        if (start == 0) {
+            return 0;
+        }
+        long end = endTime != 0 ? endTime : System.nanoTime();
+        return written.get() / ((end - start) / 1e9);
+    }
+}
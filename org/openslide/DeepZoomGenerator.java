@@ -0,0 +1,355 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Generates Deep Zoom tiles from a slide, following the level math of the
+// Python binding's openslide.deepzoom.DeepZoomGenerator.  Each tile is
+// read from the best slide level for its Deep Zoom level and then scaled
+// by the remaining downsample.  Instances are immutable, and tiles can be
+// generated concurrently.
+public final class DeepZoomGenerator {
+    static final class TileInfo {
+        final long l0X;
+
+        final long l0Y;
+
+        final int slideLevel;
+
+        final int levelWidth;
+
+        final int levelHeight;
+
+        final int tileWidth;
+
+        final int tileHeight;
+
+        TileInfo(long l0X, long l0Y, int slideLevel, int levelWidth,
+                int levelHeight, int tileWidth, int tileHeight) {
+            this.l0X = l0X;
+            this.l0Y = l0Y;
+            this.slideLevel = slideLevel;
+            this.levelWidth = levelWidth;
+            this.levelHeight = levelHeight;
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+        }
+    }
+
+    private final OpenSlide os;
+
+    private final int tileSize;
+
+    private final int overlap;
+
+    // level 0 offset of the active area
+    private final long l0OffsetX;
+
+    private final long l0OffsetY;
+
+    // downsample of each slide level
+    private final double lDownsamples[];
+
+    // dimensions of the active area in each slide level
+    private final long lWidths[];
+
+    private final long lHeights[];
+
+    // Deep Zoom level dimensions, smallest first
+    private final long zWidths[];
+
+    private final long zHeights[];
+
+    private final long tileColumns[];
+
+    private final long tileRows[];
+
+    private final int slideFromDzLevel[];
+
+    // downsample from the slide level to each Deep Zoom level
+    private final double lZDownsamples[];
+
+    private final Color background;
+
+    public DeepZoomGenerator(OpenSlide os) {
+        this(os, 254, 1, false);
+    }
+
+    // limitBounds restricts the output to the slide's non-empty region,
+    // as given by the openslide.bounds-* properties
+    public DeepZoomGenerator(OpenSlide os, int tileSize, int overlap,
+            boolean limitBounds) {
+        this(os, levelWidths(os), levelHeights(os), levelDownsamples(os),
+                os::getProperty, tileSize, overlap, limitBounds);
+    }
+
+    // the level math from slide level dimensions and downsamples and a
+    // property lookup, so it can be tested without a slide.  os is only
+    // used to read tiles.
+    DeepZoomGenerator(OpenSlide os, long levelWidths[], long levelHeights[],
+            double levelDownsamples[], Function<String, String> properties,
+            int tileSize, int overlap, boolean limitBounds) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        if (overlap < 0) {
+            throw new IllegalArgumentException(
+                    "overlap must be nonnegative");
+        }
+        this.os = os;
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+
+        int slideLevels = levelDownsamples.length;
+        lDownsamples = levelDownsamples.clone();
+        lWidths = new long[slideLevels];
+        lHeights = new long[slideLevels];
+        if (limitBounds) {
+            l0OffsetX = longProperty(properties,
+                    OpenSlide.PROPERTY_NAME_BOUNDS_X, 0);
+            l0OffsetY = longProperty(properties,
+                    OpenSlide.PROPERTY_NAME_BOUNDS_Y, 0);
+            double scaleX = (double) longProperty(properties,
+                    OpenSlide.PROPERTY_NAME_BOUNDS_WIDTH,
+                    levelWidths[0]) / levelWidths[0];
+            double scaleY = (double) longProperty(properties,
+                    OpenSlide.PROPERTY_NAME_BOUNDS_HEIGHT,
+                    levelHeights[0]) / levelHeights[0];
+            for (int i = 0; i < slideLevels; i++) {
+                lWidths[i] = (long) Math.ceil(levelWidths[i] * scaleX);
+                lHeights[i] = (long) Math.ceil(levelHeights[i] * scaleY);
+            }
+        } else {
+            l0OffsetX = 0;
+            l0OffsetY = 0;
+            for (int i = 0; i < slideLevels; i++) {
+                lWidths[i] = levelWidths[i];
+                lHeights[i] = levelHeights[i];
+            }
+        }
+
+        // halve the level 0 dimensions until we reach 1x1
+        List<long[]> dims = new ArrayList<>();
+        long w = lWidths[0];
+        long h = lHeights[0];
+        dims.add(new long[] {w, h});
+        while (w > 1 || h > 1) {
+            w = Math.max(1, (w + 1) / 2);
+            h = Math.max(1, (h + 1) / 2);
+            dims.add(new long[] {w, h});
+        }
+        int levels = dims.size();
+        zWidths = new long[levels];
+        zHeights = new long[levels];
+        tileColumns = new long[levels];
+        tileRows = new long[levels];
+        slideFromDzLevel = new int[levels];
+        lZDownsamples = new double[levels];
+        for (int i = 0; i < levels; i++) {
+            long d[] = dims.get(levels - i - 1);
+            zWidths[i] = d[0];
+            zHeights[i] = d[1];
+            tileColumns[i] = (d[0] + tileSize - 1) / tileSize;
+            tileRows[i] = (d[1] + tileSize - 1) / tileSize;
+            double l0ZDownsample = Math.pow(2, levels - i - 1);
+            slideFromDzLevel[i] = bestLevelForDownsample(l0ZDownsample);
+            lZDownsamples[i] = l0ZDownsample
+                    / lDownsamples[slideFromDzLevel[i]];
+        }
+
+        String bg = properties.apply(
+                OpenSlide.PROPERTY_NAME_BACKGROUND_COLOR);
+        background = new Color(bg != null ? Integer.parseInt(bg, 16) :
+                0xffffff);
+    }
+
+    private static long longProperty(Function<String, String> properties,
+            String name, long def) {
+        String value = properties.apply(name);
+        return value != null ? Long.parseLong(value) : def;
+    }
+
+    // as OpenSlide.getBestLevelForDownsample(), which would need the
+    // native library
+    private int bestLevelForDownsample(double downsample) {
+        for (int i = 1; i < lDownsamples.length; i++) {
+            if (downsample < lDownsamples[i]) {
+                return i - 1;
+            }
+        }
+        return lDownsamples.length - 1;
+    }
+
+    private static long[] levelWidths(OpenSlide os) {
+        long widths[] = new long[os.getLevelCount()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = os.getLevelWidth(i);
+        }
+        return widths;
+    }
+
+    private static long[] levelHeights(OpenSlide os) {
+        long heights[] = new long[os.getLevelCount()];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = os.getLevelHeight(i);
+        }
+        return heights;
+    }
+
+    private static double[] levelDownsamples(OpenSlide os) {
+        double downsamples[] = new double[os.getLevelCount()];
+        for (int i = 0; i < downsamples.length; i++) {
+            downsamples[i] = os.getLevelDownsample(i);
+        }
+        return downsamples;
+    }
+
+    public OpenSlide getOpenSlide() {
+        return os;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    public int getLevelCount() {
+        return zWidths.length;
+    }
+
+    public long getLevelWidth(int level) {
+        return zWidths[level];
+    }
+
+    public long getLevelHeight(int level) {
+        return zHeights[level];
+    }
+
+    public long getTileColumns(int level) {
+        return tileColumns[level];
+    }
+
+    public long getTileRows(int level) {
+        return tileRows[level];
+    }
+
+    public long getTileCount() {
+        long count = 0;
+        for (int i = 0; i < zWidths.length; i++) {
+            count += tileColumns[i] * tileRows[i];
+        }
+        return count;
+    }
+
+    Color getBackground() {
+        return background;
+    }
+
+    long getL0OffsetX() {
+        return l0OffsetX;
+    }
+
+    long getL0OffsetY() {
+        return l0OffsetY;
+    }
+
+    // returns an opaque RGB tile
+    public BufferedImage getTile(int level, long col, long row)
+            throws IOException {
+        TileInfo info = getTileInfo(level, col, row);
+        BufferedImage region = os.readRegion(info.l0X, info.l0Y,
+                info.slideLevel, info.levelWidth, info.levelHeight);
+
+        BufferedImage tile = new BufferedImage(info.tileWidth,
+                info.tileHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, info.tileWidth, info.tileHeight);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(region, 0, 0, info.tileWidth, info.tileHeight, null);
+        g.dispose();
+        return tile;
+    }
+
+    TileInfo getTileInfo(int level, long col, long row) {
+        if (level < 0 || level >= zWidths.length) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        if (col < 0 || col >= tileColumns[level] || row < 0
+                || row >= tileRows[level]) {
+            throw new IllegalArgumentException("Invalid address (" + col
+                    + ", " + row + ")");
+        }
+
+        int slideLevel = slideFromDzLevel[level];
+
+        // overlap on each side, omitted at the edges of the level
+        int overlapLeft = col != 0 ? overlap : 0;
+        int overlapTop = row != 0 ? overlap : 0;
+        int overlapRight = col != tileColumns[level] - 1 ? overlap : 0;
+        int overlapBottom = row != tileRows[level] - 1 ? overlap : 0;
+
+        // final size of the tile
+        int zW = (int) Math.min(tileSize, zWidths[level] - tileSize * col)
+                + overlapLeft + overlapRight;
+        int zH = (int) Math.min(tileSize, zHeights[level] - tileSize * row)
+                + overlapTop + overlapBottom;
+
+        // region location in the slide level
+        double lX = lZDownsamples[level] * (tileSize * col - overlapLeft);
+        double lY = lZDownsamples[level] * (tileSize * row - overlapTop);
+
+        // round location down and size up, and add the active area offset
+        double levelDownsample = lDownsamples[slideLevel];
+        long l0X = (long) (levelDownsample * lX) + l0OffsetX;
+        long l0Y = (long) (levelDownsample * lY) + l0OffsetY;
+        int lW = (int) Math.min(Math.ceil(lZDownsamples[level] * zW),
+                lWidths[slideLevel] - Math.ceil(lX));
+        int lH = (int) Math.min(Math.ceil(lZDownsamples[level] * zH),
+                lHeights[slideLevel] - Math.ceil(lY));
+
+        return new TileInfo(l0X, l0Y, slideLevel, lW, lH, zW, zH);
+    }
+
+    // XML descriptor for the image, where format is the tile file
+    // extension
+    public String getDzi(String format) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\""
+                + " Format=\"" + format + "\" Overlap=\"" + overlap
+                + "\" TileSize=\"" + tileSize + "\"><Size Height=\""
+                + zHeights[zHeights.length - 1] + "\" Width=\""
+                + zWidths[zWidths.length - 1] + "\"/></Image>\n";
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.color.CMMException;
+import java.awt.color.ICC_ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+// Converts premultiplied ARGB pixels from an ICC profile's color space to
+// sRGB through a 33x33x33 lookup table with tetrahedral interpolation.
+// The table is built with a single ColorConvertOp over the grid points,
+// so the CMM is only consulted once per profile; afterward, converting a
+// pixel is a handful of integer operations.  Tables are cached by a hash
+// of the profile.
+final class ICCTransform {
+    private static final int GRID = 33;
+
+    // fractional bits of table entries
+    private static final int LUT_SHIFT = 4;
+
+    // buffers larger than this are converted in parallel
+    private static final long CHUNK_PIXELS = 1 << 18;
+
+    private static final int CACHE_ENTRIES = 16;
+
+    // guarded by itself
+    private static final Map<String, ICCTransform> cache =
+            new LinkedHashMap<String, ICCTransform>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, ICCTransform> eldest) {
+                    return size() > CACHE_ENTRIES;
+                }
+            };
+
+    // sRGB values for each grid point, interleaved, in fixed point
+    private final int lut[] = new int[3 * GRID * GRID * GRID];
+
+    private ICCTransform(ICC_ColorSpace space) {
+        DirectColorModel cm = new DirectColorModel(space, 32, 0x00ff0000,
+                0x0000ff00, 0x000000ff, 0xff000000, false,
+                DataBuffer.TYPE_INT);
+        WritableRaster raster = cm.createCompatibleWritableRaster(
+                GRID * GRID, GRID);
+        BufferedImage src = new BufferedImage(cm, raster, false, null);
+        // write raw samples; setRGB() would convert from sRGB
+        for (int r = 0; r < GRID; r++) {
+            for (int g = 0; g < GRID; g++) {
+                for (int b = 0; b < GRID; b++) {
+                    raster.setDataElements(r * GRID + g, b, new int[] {
+                            0xff000000 | gridValue(r) << 16
+                            | gridValue(g) << 8 | gridValue(b)});
+                }
+            }
+        }
+
+        BufferedImage dest = new BufferedImage(GRID * GRID, GRID,
+                BufferedImage.TYPE_INT_RGB);
+        new ColorConvertOp(null).filter(src, dest);
+        for (int r = 0; r < GRID; r++) {
+            for (int g = 0; g < GRID; g++) {
+                for (int b = 0; b < GRID; b++) {
+                    int p = dest.getRGB(r * GRID + g, b);
+                    int i = 3 * ((r * GRID + g) * GRID + b);
+                    lut[i] = ((p >> 16) & 0xff) << LUT_SHIFT;
+                    lut[i + 1] = ((p >> 8) & 0xff) << LUT_SHIFT;
+                    lut[i + 2] = (p & 0xff) << LUT_SHIFT;
+                }
+            }
+        }
+    }
+
+    static ICCTransform get(byte profile[]) throws IOException {
+        String key;
+        try {
+            key = HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(profile));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        synchronized (cache) {
+            ICCTransform transform = cache.get(key);
+            if (transform != null) {
+                return transform;
+            }
+        }
+        ICCTransform transform;
+        try {
+            transform = new ICCTransform(new ICC_ColorSpace(
+                    ICC_Profile.getInstance(profile)));
+        } catch (IllegalArgumentException | CMMException ex) {
+            // a profile that parses may still fail when the color
+            // management module builds the transform
+            throw new IOException("Invalid ICC profile", ex);
+        }
+        synchronized (cache) {
+            cache.put(key, transform);
+        }
+        return transform;
+    }
+
+    // 8-bit input value of grid index i
+    private static int gridValue(int i) {
+        return (i * 255 + (GRID - 1) / 2) / (GRID - 1);
+    }
+
+    // convert count pixels in place.  Segments that other threads can't
+    // access, such as those from a confined arena, are converted on the
+    // calling thread.
+    void apply(MemorySegment pixels, long count) {
+        if (count <= CHUNK_PIXELS || !NativeBufferPool.isShared(pixels)) {
+            apply(pixels, 0, count);
+            return;
+        }
+        long chunks = (count + CHUNK_PIXELS - 1) / CHUNK_PIXELS;
+        LongStream.range(0, chunks).parallel().forEach(c -> apply(pixels,
+                c * CHUNK_PIXELS, Math.min(count, (c + 1) * CHUNK_PIXELS)));
+    }
+
+    private void apply(MemorySegment pixels, long start, long end) {
+        int rgb[] = new int[3];
+        for (long i = start; i < end; i++) {
+            int p = pixels.getAtIndex(ValueLayout.JAVA_INT, i);
+            int a = p >>> 24;
+            if (a == 0) {
+                continue;
+            }
+            int r = (p >> 16) & 0xff;
+            int g = (p >> 8) & 0xff;
+            int b = p & 0xff;
+            if (a != 255) {
+                r = Math.min(255, (r * 255 + a / 2) / a);
+                g = Math.min(255, (g * 255 + a / 2) / a);
+                b = Math.min(255, (b * 255 + a / 2) / a);
+            }
+            lookup(r, g, b, rgb);
+            r = rgb[0];
+            g = rgb[1];
+            b = rgb[2];
+            if (a != 255) {
+                r = (r * a + 127) / 255;
+                g = (g * a + 127) / 255;
+                b = (b * a + 127) / 255;
+            }
+            pixels.setAtIndex(ValueLayout.JAVA_INT, i,
+                    a << 24 | r << 16 | g << 8 | b);
+        }
+    }
+
+    // tetrahedral interpolation; fractions are in units of 1/255
+    private void lookup(int r, int g, int b, int out[]) {
+        int pr = r * (GRID - 1);
+        int pg = g * (GRID - 1);
+        int pb = b * (GRID - 1);
+        int ir = Math.min(pr / 255, GRID - 2);
+        int ig = Math.min(pg / 255, GRID - 2);
+        int ib = Math.min(pb / 255, GRID - 2);
+        int fr = pr - ir * 255;
+        int fg = pg - ig * 255;
+        int fb = pb - ib * 255;
+
+        // offsets of the neighboring grid points along each axis
+        int sr = 3 * GRID * GRID;
+        int sg = 3 * GRID;
+        int sb = 3;
+        int c000 = 3 * ((ir * GRID + ig) * GRID + ib);
+        int c111 = c000 + sr + sg + sb;
+        int c1;
+        int c2;
+        int w0;
+        int w1;
+        int w2;
+        int w3;
+        if (fr >= fg) {
+            if (fg >= fb) {
+                c1 = c000 + sr;
+                c2 = c000 + sr + sg;
+                w1 = fr - fg;
+                w2 = fg - fb;
+                w3 = fb;
+            } else if (fr >= fb) {
+                c1 = c000 + sr;
+                c2 = c000 + sr + sb;
+                w1 = fr - fb;
+                w2 = fb - fg;
+                w3 = fg;
+            } else {
+                c1 = c000 + sb;
+                c2 = c000 + sr + sb;
+                w1 = fb - fr;
+                w2 = fr - fg;
+                w3 = fg;
+            }
+        } else {
+            if (fb >= fg) {
+                c1 = c000 + sb;
+                c2 = c000 + sg + sb;
+                w1 = fb - fg;
+                w2 = fg - fr;
+                w3 = fr;
+            } else if (fb >= fr) {
+                c1 = c000 + sg;
+                c2 = c000 + sg + sb;
+                w1 = fg - fb;
+                w2 = fb - fr;
+                w3 = fr;
+            } else {
+                c1 = c000 + sg;
+                c2 = c000 + sr + sg;
+                w1 = fg - fr;
+                w2 = fr - fb;
+                w3 = fb;
+            }
+        }
+        w0 = 255 - w1 - w2 - w3;
+        int round = 255 << (LUT_SHIFT - 1);
+        int div = 255 << LUT_SHIFT;
+        for (int ch = 0; ch < 3; ch++) {
+            out[ch] = (w0 * lut[c000 + ch] + w1 * lut[c1 + ch]
+                    + w2 * lut[c2 + ch] + w3 * lut[c111 + ch] + round) / div;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reads regions too large for a single readRegion call by splitting them
+// into tiles, which are decoded in parallel into pooled native buffers
+// and handed to a sink.  At most two tiles per thread are in flight, so
+// memory use doesn't depend on the size of the region.  Pixels are
+// premultiplied ARGB in native byte order, as with readRegion.
+public final class LargeRegionReader implements AutoCloseable {
+    // called concurrently from decoder threads, in no particular order.
+    // x and y are relative to the region, and pixels is only valid
+    // during the call.
+    public interface TileSink {
+        void tile(long x, long y, int w, int h, MemorySegment pixels)
+                throws IOException;
+    }
+
+    // called on the reading thread for each horizontal strip of the
+    // region in order.  y is relative to the region, the strip is the
+    // full width of the region, and pixels is only valid during the call.
+    public interface StripSink {
+        void strip(long y, int h, MemorySegment pixels) throws IOException;
+    }
+
+    private final OpenSlide os;
+
+    private final int tileSize;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    public LargeRegionReader(OpenSlide os, int tileSize, int parallelism) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "parallelism must be positive");
+        }
+        this.os = os;
+        this.tileSize = tileSize;
+        this.parallelism = parallelism;
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r,
+                    "openslide-region-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // read the w x h region of level whose top left corner is at level 0
+    // coordinates (x, y)
+    public void read(long x, long y, int level, long w, long h,
+            TileSink sink) throws IOException {
+        checkRegion(level, w, h);
+        readTiles(x, y, level, w, 0, h, sink);
+    }
+
+    // read the region in strips of stripHeight rows; each strip is
+    // buffered in native memory
+    public void read(long x, long y, int level, long w, long h,
+            int stripHeight, StripSink sink) throws IOException {
+        checkRegion(level, w, h);
+        if (stripHeight <= 0) {
+            throw new IllegalArgumentException(
+                    "stripHeight must be positive");
+        }
+        // tiles are copied into the strip from the executor threads
+        try (Arena arena = Arena.ofShared()) {
+            MemorySegment strip = arena.allocate(
+                    w * stripHeight * Integer.BYTES, Integer.BYTES);
+            for (long sy = 0; sy < h; sy += stripHeight) {
+                int sh = (int) Math.min(stripHeight, h - sy);
+                long top = sy;
+                readTiles(x, y, level, w, sy, sy + sh,
+                        (tx, ty, tw, th, pixels) -> copy(pixels, tw, th,
+                        strip, w, tx, ty - top));
+                sink.strip(sy, sh, strip.asSlice(0,
+                        w * sh * Integer.BYTES));
+            }
+        }
+    }
+
+    // write the region to file as a raw raster of w x h pixels, replacing
+    // any existing contents.  The file is memory-mapped.
+    public void read(long x, long y, int level, long w, long h, Path file)
+            throws IOException {
+        checkRegion(level, w, h);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                Arena arena = Arena.ofShared()) {
+            MemorySegment raster = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, w * h * Integer.BYTES, arena);
+            readTiles(x, y, level, w, 0, h,
+                    (tx, ty, tw, th, pixels) -> copy(pixels, tw, th, raster,
+                    w, tx, ty));
+            raster.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void checkRegion(int level, long w, long h) {
+        if (level < 0 || level >= os.getLevelCount()) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        if (w <= 0 || h <= 0) {
+            throw new IllegalArgumentException("w and h must be positive");
+        }
+        if (w > Long.MAX_VALUE / Integer.BYTES / h) {
+            throw new IllegalArgumentException("Region too large");
+        }
+    }
+
+    // decode rows [y0, y1) of the region
+    private void readTiles(long x, long y, int level, long w, long y0,
+            long y1, TileSink sink) throws IOException {
+        double downsample = os.getLevelDownsample(level);
+        long cols = (w + tileSize - 1) / tileSize;
+        long rows = (y1 - y0 + tileSize - 1) / tileSize;
+        ParallelLoop.run(executor, 2 * parallelism, rows * cols, i -> {
+            long tx = i % cols * tileSize;
+            long ty = y0 + i / cols * tileSize;
+            int tw = (int) Math.min(tileSize, w - tx);
+            int th = (int) Math.min(tileSize, y1 - ty);
+            readTile(x + (long) (tx * downsample),
+                    y + (long) (ty * downsample), level, tx, ty, tw, th,
+                    sink);
+        });
+    }
+
+    private void readTile(long l0X, long l0Y, int level, long tx, long ty,
+            int tw, int th, TileSink sink) throws IOException {
+        long bytes = (long) tw * th * Integer.BYTES;
+        try (NativeBufferPool.Scratch scratch =
+                NativeBufferPool.acquire(bytes)) {
+            MemorySegment pixels = scratch.allocate(bytes, Integer.BYTES);
+            os.readRegion(pixels, l0X, l0Y, level, tw, th);
+            sink.tile(tx, ty, tw, th, pixels);
+        }
+    }
+
+    // copy a tile into a raster of the given width
+    private static void copy(MemorySegment tile, int tw, int th,
+            MemorySegment raster, long width, long x, long y) {
+        long rowBytes = (long) tw * Integer.BYTES;
+        for (int row = 0; row < th; row++) {
+            MemorySegment.copy(tile, row * rowBytes, raster,
+                    ((y + row) * width + x) * Integer.BYTES, rowBytes);
+        }
+    }
+}
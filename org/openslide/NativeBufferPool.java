@@ -0,0 +1,228 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Shared pool of native scratch buffers for FFM calls, bucketed into
+// power-of-two size classes.  Buffers are not tied to a thread, so the
+// pool works the same for platform and virtual threads.  The total size
+// of pooled buffers, idle or in use, never exceeds the capacity; requests
+// that don't fit fall back to a private arena.
+public final class NativeBufferPool {
+    private static final int MIN_SHIFT = 6;
+
+    private static final int MAX_SHIFT = 26;
+
+    private static final long ALIGNMENT = 16;
+
+    private static class Block {
+        final Arena arena;
+
+        final MemorySegment segment;
+
+        Block(long size) {
+            arena = Arena.ofShared();
+            segment = arena.allocate(size, ALIGNMENT);
+        }
+    }
+
+    static final class Scratch implements SegmentAllocator, AutoCloseable {
+        private final Block block;
+
+        private final SegmentAllocator slicer;
+
+        private Arena overflow;
+
+        private Scratch(Block block) {
+            this.block = block;
+            slicer = block != null ?
+                    SegmentAllocator.slicingAllocator(block.segment) : null;
+        }
+
+        @Override
+        public MemorySegment allocate(long byteSize, long byteAlignment) {
+            if (slicer != null) {
+                try {
+                    return slicer.allocate(byteSize, byteAlignment);
+                } catch (IndexOutOfBoundsException ex) {
+                    // fall through
+                }
+            }
+            if (overflow == null) {
+                overflow = Arena.ofConfined();
+            }
+            return overflow.allocate(byteSize, byteAlignment);
+        }
+
+        @Override
+        public void close() {
+            if (overflow != null) {
+                overflow.close();
+            }
+            if (block != null) {
+                release(block);
+            }
+        }
+    }
+
+    private static final List<ConcurrentLinkedDeque<Block>> freeLists =
+            new ArrayList<>();
+
+    private static final AtomicLong allocatedBytes = new AtomicLong();
+
+    private static final AtomicLong idleBytes = new AtomicLong();
+
+    private static final AtomicLong highWaterMark = new AtomicLong();
+
+    private static volatile long capacity = 64 << 20;
+
+    static {
+        for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+            freeLists.add(new ConcurrentLinkedDeque<>());
+        }
+    }
+
+    // never started; only asked about by isShared()
+    private static final Thread PROBE = new Thread(() -> {});
+
+    private NativeBufferPool() {
+    }
+
+    // whether threads other than the caller can access seg; false for
+    // segments of confined arenas
+    static boolean isShared(MemorySegment seg) {
+        return seg.isAccessibleBy(PROBE);
+    }
+
+    // returns an allocator with at least size bytes of pooled memory;
+    // allocations beyond that are served from a private arena
+    static Scratch acquire(long size) {
+        int cls = sizeClass(size);
+        if (cls < 0) {
+            return new Scratch(null);
+        }
+        Block block = freeLists.get(cls).pollFirst();
+        if (block != null) {
+            idleBytes.addAndGet(-block.segment.byteSize());
+            return new Scratch(block);
+        }
+        long classSize = 1L << (cls + MIN_SHIFT);
+        if (!reserve(classSize)) {
+            return new Scratch(null);
+        }
+        try {
+            return new Scratch(new Block(classSize));
+        } catch (RuntimeException | OutOfMemoryError ex) {
+            allocatedBytes.addAndGet(-classSize);
+            throw ex;
+        }
+    }
+
+    public static long getCapacity() {
+        return capacity;
+    }
+
+    public static void setCapacity(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("capacity must be nonnegative");
+        }
+        capacity = bytes;
+        while (allocatedBytes.get() > bytes && evictOne()) {
+            // keep going
+        }
+    }
+
+    // bytes held by the pool, whether idle or in use
+    public static long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public static long getIdleBytes() {
+        return idleBytes.get();
+    }
+
+    // largest value ever reached by getAllocatedBytes()
+    public static long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    private static int sizeClass(long size) {
+        int shift = 64 - Long.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        if (shift > MAX_SHIFT) {
+            return -1;
+        }
+        return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+    }
+
+    private static boolean reserve(long size) {
+        while (true) {
+            long cur = allocatedBytes.get();
+            if (cur + size <= capacity) {
+                if (allocatedBytes.compareAndSet(cur, cur + size)) {
+                    highWaterMark.accumulateAndGet(cur + size, Math::max);
+                    return true;
+                }
+            } else if (!evictOne()) {
+                return false;
+            }
+        }
+    }
+
+    // free the least recently used idle block, preferring large ones
+    private static boolean evictOne() {
+        for (int i = freeLists.size() - 1; i >= 0; i--) {
+            Block block = freeLists.get(i).pollLast();
+            if (block != null) {
+                free(block, true);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void release(Block block) {
+        if (allocatedBytes.get() > capacity) {
+            // capacity was reduced while the block was in use
+            free(block, false);
+            return;
+        }
+        long size = block.segment.byteSize();
+        idleBytes.addAndGet(size);
+        freeLists.get(sizeClass(size)).addFirst(block);
+    }
+
+    private static void free(Block block, boolean idle) {
+        long size = block.segment.byteSize();
+        if (idle) {
+            idleBytes.addAndGet(-size);
+        }
+        allocatedBytes.addAndGet(-size);
+        block.arena.close();
+    }
+}
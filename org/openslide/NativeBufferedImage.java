@@ -0,0 +1,53 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.lang.foreign.MemorySegment;
+
+// A BufferedImage whose pixels live in native memory rather than on the
+// Java heap.  The memory is freed by close(), or when the image's
+// DataBuffer becomes unreachable; afterward, pixel access throws
+// IllegalStateException.
+public final class NativeBufferedImage extends BufferedImage
+        implements AutoCloseable {
+    private final NativeDataBuffer buffer;
+
+    NativeBufferedImage(ColorModel cm, NativeDataBuffer buffer, int w, int h) {
+        super(cm, Raster.createWritableRaster(
+                cm.createCompatibleSampleModel(w, h), buffer, null), true,
+                null);
+        this.buffer = buffer;
+    }
+
+    // premultiplied ARGB pixels in native byte order
+    public MemorySegment getSegment() {
+        return buffer.getSegment();
+    }
+
+    @Override
+    public void close() {
+        buffer.close();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.image.DataBuffer;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import java.lang.ref.Cleaner;
+
+// DataBuffer over native memory.  The memory is freed by close(), or when
+// the buffer becomes unreachable.
+final class NativeDataBuffer extends DataBuffer implements AutoCloseable {
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final MemorySegment segment;
+
+    private final Cleaner.Cleanable cleanable;
+
+    NativeDataBuffer(int size) {
+        super(TYPE_INT, size);
+        Arena arena = Arena.ofShared();
+        try {
+            segment = arena.allocate(JAVA_INT, size);
+        } catch (RuntimeException | OutOfMemoryError ex) {
+            arena.close();
+            throw ex;
+        }
+        // the cleaning action must not refer to this
+        cleanable = cleaner.register(this, arena::close);
+    }
+
+    MemorySegment getSegment() {
+        return segment;
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+        return segment.getAtIndex(JAVA_INT, i);
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+        segment.setAtIndex(JAVA_INT, i, val);
+    }
+
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+}
@@ -38,7 +38,16 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.swing.filechooser.FileFilter;
 
@@ -79,6 +88,18 @@ public final class OpenSlide implements Closeable {
         }
     }
 
+    public enum OpenOption {
+        // defer reading properties, associated images, and the ICC
+        // profile until they are first requested
+        LAZY,
+        // convert pixels from the slide's ICC profile to sRGB while
+        // reading, using a precomputed lookup table.  Images are returned
+        // with an sRGB color model.
+        SRGB
+    }
+
+    private static final SingleFlight flights = new SingleFlight();
+
     private static final String LIBRARY_VERSION = OpenSlideFFM
             .openslide_get_version();
 
@@ -119,11 +140,33 @@ public final class OpenSlide implements Closeable {
 
     final private int levelCount;
 
-    final private Map<String, String> properties;
+    // loaded on first use with the LAZY open option
+    private volatile Map<String, String> properties;
+
+    private volatile Map<String, AssociatedImage> associatedImages;
+
+    private volatile ColorModel colorModel;
+
+    // with the SRGB option, null if the slide has no ICC profile
+    private volatile ICCTransform transform;
+
+    private volatile boolean transformLoaded;
+
+    final private boolean srgb;
+
+    final private Object lazyLock = new Object();
+
+    final private String quickhash1;
+
+    private volatile OpenSlideTileCache tileCache;
+
+    private volatile OpenSlideDiskCache diskCache;
 
-    final private Map<String, AssociatedImage> associatedImages;
+    private volatile OpenSlideThumbnailCache thumbnailCache;
 
-    final private ColorModel colorModel;
+    private volatile RegionScheduler scheduler;
+
+    private volatile OpenSlidePrefetcher prefetcher;
 
     final private File canonicalFile;
 
@@ -134,6 +177,13 @@ public final class OpenSlide implements Closeable {
     }
 
     public OpenSlide(File file) throws IOException {
+        this(file, new OpenOption[0]);
+    }
+
+    public OpenSlide(File file, OpenOption... options) throws IOException {
+        boolean lazy = Arrays.asList(options).contains(OpenOption.LAZY);
+        srgb = Arrays.asList(options).contains(OpenOption.SRGB);
+
         // allow opening the synthetic slide
         if (!file.exists() && !file.getPath().equals("")) {
             throw new FileNotFoundException(file.toString());
@@ -172,29 +222,16 @@ public final class OpenSlide implements Closeable {
                         OpenSlideFFM.openslide_get_level_downsample(osr, i);
             }
 
-            // properties
-            HashMap<String, String> props = new HashMap<String, String>();
-            for (String s : OpenSlideFFM.openslide_get_property_names(osr)) {
-                props.put(s, OpenSlideFFM.openslide_get_property_value(osr, s));
-            }
-
-            properties = Collections.unmodifiableMap(props);
-
-            // associated images
-            HashMap<String, AssociatedImage> associated =
-                    new HashMap<String, AssociatedImage>();
-            for (String s : OpenSlideFFM
-                    .openslide_get_associated_image_names(osr)) {
-                associated.put(s, new AssociatedImage(s, this));
+            if (!lazy) {
+                properties = readProperties();
+                associatedImages = readAssociatedImages();
+                colorModel = readColorModel(null);
             }
 
-            associatedImages = Collections.unmodifiableMap(associated);
-
-            colorModel = readColorModel(null);
-
             // store info for hash and equals
             canonicalFile = file.getCanonicalFile();
-            String quickhash1 = getProperties().get(PROPERTY_NAME_QUICKHASH1);
+            quickhash1 = OpenSlideFFM.openslide_get_property_value(osr,
+                    PROPERTY_NAME_QUICKHASH1);
             if (quickhash1 != null) {
                 hashCodeVal = (int) Long.parseLong(quickhash1.substring(0, 8),
                         16);
@@ -238,8 +275,17 @@ public final class OpenSlide implements Closeable {
         return levelHeights[level];
     }
 
+    // whether pixels are converted to sRGB
+    boolean isSRGB() {
+        return srgb;
+    }
+
     public ColorModel getColorModel() {
-        return colorModel;
+        try {
+            return colorModel();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public void paintRegionOfLevel(Graphics2D g, int dx, int dy, int sx,
@@ -258,20 +304,157 @@ public final class OpenSlide implements Closeable {
             throw new IllegalArgumentException("w and h must be nonnegative");
         }
 
-        try (errorCtx) {
-            OpenSlideFFM.openslide_read_region(errorCtx.getOsr(), dest, x, y,
-                    level, w, h);
-        }
+        readPixels(MemorySegment.ofArray(dest), x, y, level, w, h);
     }
 
     public BufferedImage readRegion(long x, long y, int level, int w, int h)
             throws IOException {
-        BufferedImage img = createARGBBufferedImage(colorModel, w, h);
+        BufferedImage img = createARGBBufferedImage(colorModel(), w, h);
         int data[] = getARGBPixels(img);
         paintRegionARGB(data, x, y, level, w, h);
         return img;
     }
 
+    // read on the region scheduler, or on a shared default scheduler if
+    // none is set.  Higher priorities are read first, and cancelling the
+    // future before the read starts drops the request.
+    public CompletableFuture<BufferedImage> readRegionAsync(long x, long y,
+            int level, int w, int h, int priority) {
+        RegionScheduler s = scheduler;
+        if (s == null) {
+            s = RegionScheduler.getDefault();
+        }
+        return s.submit(this, x, y, level, w, h, priority);
+    }
+
+    // decode directly into caller-owned native memory, without an
+    // intermediate copy
+    public void readRegion(MemorySegment dest, long x, long y, int level,
+            int w, int h) throws IOException {
+        checkRegionDestination(dest, w, h);
+
+        readPixels(dest, x, y, level, w, h);
+    }
+
+    // all region reads go through here
+    private void readPixels(MemorySegment dest, long x, long y, int level,
+            int w, int h) throws IOException {
+        OpenSlidePrefetcher p = prefetcher;
+        if (p == null) {
+            decodePixels(dest, x, y, level, w, h);
+            return;
+        }
+        try {
+            p.begin(x, y, level, w, h);
+            decodePixels(dest, x, y, level, w, h);
+        } finally {
+            p.end();
+        }
+    }
+
+    // read for the prefetcher, without notifying it
+    void prefetch(MemorySegment dest, long x, long y, int level, int w,
+            int h) throws IOException {
+        decodePixels(dest, x, y, level, w, h);
+    }
+
+    private void decodePixels(MemorySegment dest, long x, long y, int level,
+            int w, int h) throws IOException {
+        OpenSlideTileCache cache = tileCache;
+        OpenSlideDiskCache disk = diskCache;
+        ICCTransform transform = srgb ? slideTransform() : null;
+        // converted pixels are kept separately
+        String slide = quickhash1 != null ? quickhash1 :
+                canonicalFile.getPath();
+        TileKey key = new TileKey(transform != null ? slide + "/srgb" : slide,
+                level, x, y, w, h);
+        boolean cacheable = (cache != null || disk != null)
+                && quickhash1 != null;
+        if (cacheable) {
+            if (cache != null && cache.get(key, dest)) {
+                return;
+            }
+            if (disk != null && disk.get(key, dest)) {
+                if (cache != null) {
+                    cache.put(key, dest);
+                }
+                return;
+            }
+        }
+
+        // share the decode with identical concurrent reads
+        boolean decoded = flights.read(key, dest, () -> {
+            try (errorCtx) {
+                OpenSlideFFM.openslide_read_region(errorCtx.getOsr(), dest, x,
+                        y, level, w, h);
+            }
+            if (transform != null) {
+                transform.apply(dest, (long) w * h);
+            }
+        });
+
+        if (decoded && cacheable) {
+            if (cache != null) {
+                cache.put(key, dest);
+            }
+            if (disk != null) {
+                disk.put(key, dest);
+            }
+        }
+    }
+
+    // like readRegion(), but keeps the pixels in native memory owned by the
+    // returned image rather than on the Java heap
+    public NativeBufferedImage readRegionNative(long x, long y, int level,
+            int w, int h) throws IOException {
+        if ((long) w * (long) h > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region too large");
+        }
+        if (w < 0 || h < 0) {
+            throw new IllegalArgumentException("w and h must be nonnegative");
+        }
+
+        NativeDataBuffer buf = new NativeDataBuffer(w * h);
+        try {
+            readRegion(buf.getSegment(), x, y, level, w, h);
+            return new NativeBufferedImage(colorModel(), buf, w, h);
+        } catch (IOException | RuntimeException e) {
+            buf.close();
+            throw e;
+        }
+    }
+
+    // pixels are written starting at the buffer's position; the position
+    // is not changed
+    public void readRegion(IntBuffer dest, long x, long y, int level, int w,
+            int h) throws IOException {
+        if (dest.order() != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException(
+                    "Buffer must be in native byte order");
+        }
+        readRegion(bufferSegment(dest), x, y, level, w, h);
+    }
+
+    public void readRegion(ByteBuffer dest, long x, long y, int level, int w,
+            int h) throws IOException {
+        readRegion(bufferSegment(dest), x, y, level, w, h);
+    }
+
+    // lazily enumerate the tiles covering a level, in row-major order;
+    // tiles on the right and bottom edges are clipped to the level size.
+    // Tiles can be read concurrently, so the stream may be parallel.
+    public Stream<Tile> tiles(int level, int tileW, int tileH) {
+        if (level < 0 || level >= levelCount) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        if (tileW <= 0 || tileH <= 0) {
+            throw new IllegalArgumentException(
+                    "tileW and tileH must be positive");
+        }
+        return StreamSupport.stream(
+                new TileSpliterator(this, level, tileW, tileH), false);
+    }
+
     public void paintRegion(Graphics2D g, int dx, int dy, long sx, long sy,
             int w, int h, double downsample) throws IOException {
         if (downsample < 1.0) {
@@ -309,15 +492,23 @@ public final class OpenSlide implements Closeable {
                     + ", baseX " + baseX + ", baseY " + baseY);
         }
 
-        if (levelW <= 0 || levelH <= 0) {
+        if (levelW <= 0 || levelH <= 0 || w <= 0 || h <= 0) {
             // nothing to draw
             return;
         }
 
         BufferedImage img = readRegion(baseX, baseY, level, levelW, levelH);
 
-        // g.scale(1.0 / relativeDS, 1.0 / relativeDS);
-        g.drawImage(img, dx, dy, w, h, null);
+        // scale ourselves rather than leaving it to drawImage, which is
+        // slow for our color model
+        if (levelW != w || levelH != h) {
+            BufferedImage scaled = createARGBBufferedImage(colorModel(), w,
+                    h);
+            ARGBResampler.resample(getARGBPixels(img), levelW, levelH,
+                    getARGBPixels(scaled), w, h, ARGBResampler.Filter.AREA);
+            img = scaled;
+        }
+        g.drawImage(img, dx, dy, null);
 
         if (debug) {
             System.out.println(img);
@@ -358,8 +549,40 @@ public final class OpenSlide implements Closeable {
 
         BufferedImage result = new BufferedImage(sw, sh, bufferedImageType);
 
+        if (x == 0 && y == 0 && w == getLevel0Width()
+                && h == getLevel0Height()) {
+            BufferedImage img = embeddedThumbnail(sw, sh);
+            if (img != null) {
+                Graphics2D g = result.createGraphics();
+                g.drawImage(img, 0, 0, null);
+                g.dispose();
+                return result;
+            }
+        }
+
+        // unlike paintRegion, stream the source level through an
+        // area-averaging filter rather than reading it all at once
+        int level = getBestLevelForDownsample(ds);
+        double relativeDS = ds / levelDownsamples[level];
+        long levelX = (long) (relativeDS * sx);
+        long levelY = (long) (relativeDS * sy);
+        int levelW = (int) Math.min(Math.round(relativeDS * sw),
+                getLevelWidth(level) - levelX);
+        int levelH = (int) Math.min(Math.round(relativeDS * sh),
+                getLevelHeight(level) - levelY);
+        int dw = (int) Math.min(sw, Math.round(levelW / relativeDS));
+        int dh = (int) Math.min(sh, Math.round(levelH / relativeDS));
+        if (levelW <= 0 || levelH <= 0 || dw <= 0 || dh <= 0) {
+            // nothing to draw
+            return result;
+        }
+
+        BufferedImage img = createARGBBufferedImage(colorModel(), dw, dh);
+        ThumbnailRenderer.render(this, (long) (ds * sx), (long) (ds * sy),
+                level, levelW, levelH, getARGBPixels(img), dw, dh);
+
         Graphics2D g = result.createGraphics();
-        paintRegion(g, 0, 0, sx, sy, sw, sh, ds);
+        g.drawImage(img, 0, 0, null);
         g.dispose();
         return result;
     }
@@ -371,8 +594,41 @@ public final class OpenSlide implements Closeable {
     }
 
     public BufferedImage createThumbnailImage(int maxSize) throws IOException {
-        return createThumbnailImage(0, 0, getLevel0Width(), getLevel0Height(),
-                maxSize);
+        OpenSlideThumbnailCache cache = thumbnailCache;
+        if (cache == null || quickhash1 == null) {
+            return createThumbnailImage(0, 0, getLevel0Width(),
+                    getLevel0Height(), maxSize);
+        }
+        BufferedImage img = cache.get(quickhash1, srgb, maxSize);
+        if (img == null) {
+            img = createThumbnailImage(0, 0, getLevel0Width(),
+                    getLevel0Height(), maxSize);
+            cache.put(quickhash1, srgb, maxSize, img);
+        }
+        return img;
+    }
+
+    // the vendor's thumbnail associated image, averaged down to w x h, if
+    // it's at least that large and has the same aspect ratio as the slide
+    private BufferedImage embeddedThumbnail(int w, int h) throws IOException {
+        if (!getAssociatedImages().containsKey("thumbnail")) {
+            return null;
+        }
+        long dim[] = getAssociatedImageDimensions("thumbnail");
+        double slideAspect = (double) getLevel0Width() / getLevel0Height();
+        double aspect = (double) dim[0] / dim[1];
+        if (dim[0] < w || dim[1] < h
+                || Math.abs(aspect / slideAspect - 1) > 0.02) {
+            return null;
+        }
+
+        BufferedImage src = getAssociatedImage("thumbnail");
+        BufferedImage img = createARGBBufferedImage(src.getColorModel(), w,
+                h);
+        ARGBResampler.resample(getARGBPixels(src), (int) dim[0],
+                (int) dim[1], getARGBPixels(img), w, h,
+                ARGBResampler.Filter.AREA);
+        return img;
     }
 
     public double getLevelDownsample(int level) {
@@ -396,15 +652,81 @@ public final class OpenSlide implements Closeable {
         return levelCount - 1;
     }
 
+    // with the LAZY open option, these throw UncheckedIOException if the
+    // metadata can't be read
     public Map<String, String> getProperties() {
-        return properties;
+        Map<String, String> props = properties;
+        if (props == null) {
+            synchronized (lazyLock) {
+                props = properties;
+                if (props == null) {
+                    try {
+                        props = properties = readProperties();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return props;
+    }
+
+    // reads a single property without loading the others
+    public String getProperty(String name) {
+        Map<String, String> props = properties;
+        if (props != null) {
+            return props.get(name);
+        }
+        try (errorCtx) {
+            return OpenSlideFFM.openslide_get_property_value(
+                    errorCtx.getOsr(), name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public Map<String, AssociatedImage> getAssociatedImages() {
-        return associatedImages;
+        Map<String, AssociatedImage> associated = associatedImages;
+        if (associated == null) {
+            synchronized (lazyLock) {
+                associated = associatedImages;
+                if (associated == null) {
+                    try {
+                        associated = associatedImages =
+                                readAssociatedImages();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return associated;
     }
 
     BufferedImage getAssociatedImage(String name) throws IOException {
+        long dim[] = getAssociatedImageDimensions(name);
+
+        ColorModel cm = readColorModel(name);
+        BufferedImage img = createARGBBufferedImage(cm, (int) dim[0],
+                (int) dim[1]);
+        int data[] = getARGBPixels(img);
+
+        try (errorCtx) {
+            OpenSlideFFM.openslide_read_associated_image(errorCtx.getOsr(),
+                    name, data);
+        }
+        if (srgb) {
+            byte profile[] = readICCProfile(name);
+            if (profile != null) {
+                ICCTransform.get(profile).apply(MemorySegment.ofArray(data),
+                        data.length);
+            }
+        }
+        return img;
+    }
+
+    private long[] getAssociatedImageDimensions(String name)
+            throws IOException {
         long dim[] = new long[2];
         try (errorCtx) {
             OpenSlideFFM.openslide_get_associated_image_dimensions(
@@ -414,17 +736,43 @@ public final class OpenSlide implements Closeable {
             // non-terminal error
             throw new IOException("Failure reading associated image");
         }
+        return dim;
+    }
 
-        ColorModel cm = readColorModel(name);
-        BufferedImage img = createARGBBufferedImage(cm, (int) dim[0],
-                (int) dim[1]);
-        int data[] = getARGBPixels(img);
+    // regions are looked up in the tile cache before being decoded, and
+    // added to it afterward.  Slides without a quickhash are not cached.
+    public void setTileCache(OpenSlideTileCache cache) {
+        tileCache = cache;
+    }
 
-        try (errorCtx) {
-            OpenSlideFFM.openslide_read_associated_image(errorCtx.getOsr(),
-                    name, data);
+    // consulted after the tile cache, if any
+    public void setDiskCache(OpenSlideDiskCache cache) {
+        diskCache = cache;
+    }
+
+    // a newly attached prefetcher replaces the previous one
+    void setPrefetcher(OpenSlidePrefetcher prefetcher) {
+        synchronized (lazyLock) {
+            this.prefetcher = prefetcher;
         }
-        return img;
+    }
+
+    void clearPrefetcher(OpenSlidePrefetcher prefetcher) {
+        synchronized (lazyLock) {
+            if (this.prefetcher == prefetcher) {
+                this.prefetcher = null;
+            }
+        }
+    }
+
+    public void setRegionScheduler(RegionScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    // consulted by createThumbnailImage(int).  Slides without a quickhash
+    // are not cached.
+    public void setThumbnailCache(OpenSlideThumbnailCache cache) {
+        thumbnailCache = cache;
     }
 
     public void setCache(OpenSlideCache cache) {
@@ -453,10 +801,7 @@ public final class OpenSlide implements Closeable {
 
         if (obj instanceof OpenSlide) {
             OpenSlide os2 = (OpenSlide) obj;
-            String quickhash1 = getProperties()
-                    .get(PROPERTY_NAME_QUICKHASH1);
-            String os2_quickhash1 = os2.getProperties()
-                    .get(PROPERTY_NAME_QUICKHASH1);
+            String os2_quickhash1 = os2.quickhash1;
 
             if (quickhash1 != null && os2_quickhash1 != null) {
                 return quickhash1.equals(os2_quickhash1);
@@ -482,14 +827,111 @@ public final class OpenSlide implements Closeable {
         return buf.getData();
     }
 
+    private static MemorySegment bufferSegment(Buffer buf) {
+        if (!buf.isDirect()) {
+            throw new IllegalArgumentException("Buffer must be direct");
+        }
+        return MemorySegment.ofBuffer(buf);
+    }
+
+    private static void checkRegionDestination(MemorySegment dest, int w,
+            int h) {
+        if (w < 0 || h < 0) {
+            throw new IllegalArgumentException("w and h must be nonnegative");
+        }
+        if (!dest.isNative()) {
+            throw new IllegalArgumentException(
+                    "Destination must be in native memory");
+        }
+        if (dest.isReadOnly()) {
+            throw new IllegalArgumentException("Destination is read-only");
+        }
+        if (dest.address() % Integer.BYTES != 0) {
+            throw new IllegalArgumentException(
+                    "Destination must be aligned to " + Integer.BYTES
+                    + " bytes");
+        }
+        if ((long) w * (long) h * Integer.BYTES > dest.byteSize()) {
+            throw new IndexOutOfBoundsException("Size of destination ("
+                    + dest.byteSize() + " bytes) is less than w * h * "
+                    + Integer.BYTES);
+        }
+    }
+
+    private Map<String, String> readProperties() throws IOException {
+        HashMap<String, String> props = new HashMap<String, String>();
+        try (errorCtx) {
+            OpenSlideFFM.OpenSlideRef osr = errorCtx.getOsr();
+            for (String s : OpenSlideFFM.openslide_get_property_names(osr)) {
+                props.put(s, OpenSlideFFM.openslide_get_property_value(osr, s));
+            }
+        }
+        return Collections.unmodifiableMap(props);
+    }
+
+    private Map<String, AssociatedImage> readAssociatedImages()
+            throws IOException {
+        HashMap<String, AssociatedImage> associated =
+                new HashMap<String, AssociatedImage>();
+        try (errorCtx) {
+            for (String s : OpenSlideFFM
+                    .openslide_get_associated_image_names(errorCtx.getOsr())) {
+                associated.put(s, new AssociatedImage(s, this));
+            }
+        }
+        return Collections.unmodifiableMap(associated);
+    }
+
+    private ColorModel colorModel() throws IOException {
+        ColorModel cm = colorModel;
+        if (cm == null) {
+            synchronized (lazyLock) {
+                cm = colorModel;
+                if (cm == null) {
+                    cm = colorModel = readColorModel(null);
+                }
+            }
+        }
+        return cm;
+    }
+
+    private ICCTransform slideTransform() throws IOException {
+        if (!transformLoaded) {
+            synchronized (lazyLock) {
+                if (!transformLoaded) {
+                    byte profile[] = readICCProfile(null);
+                    if (profile != null) {
+                        transform = ICCTransform.get(profile);
+                    }
+                    transformLoaded = true;
+                }
+            }
+        }
+        return transform;
+    }
+
     private ColorModel readColorModel(String associated) throws IOException {
-        ColorSpace space = readColorSpace(associated);
+        ColorSpace space = srgb ? ColorSpace.getInstance(ColorSpace.CS_sRGB) :
+                readColorSpace(associated);
         return new DirectColorModel(space, 32,
                 0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000, true,
                 DataBuffer.TYPE_INT);
     }
 
     private ColorSpace readColorSpace(String associated) throws IOException {
+        byte data[] = readICCProfile(associated);
+        if (data == null) {
+            return ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        }
+        try {
+            return new ICC_ColorSpace(ICC_Profile.getInstance(data));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid ICC profile", ex);
+        }
+    }
+
+    // null if there's no profile
+    private byte[] readICCProfile(String associated) throws IOException {
         long size;
         try (errorCtx) {
             if (associated != null) {
@@ -501,7 +943,7 @@ public final class OpenSlide implements Closeable {
             }
         }
         if (size <= 0) {
-            return ColorSpace.getInstance(ColorSpace.CS_sRGB);
+            return null;
         } else if (size > Integer.MAX_VALUE) {
             throw new IOException("ICC profile too large");
         }
@@ -516,10 +958,6 @@ public final class OpenSlide implements Closeable {
                         data);
             }
         }
-        try {
-            return new ICC_ColorSpace(ICC_Profile.getInstance(data));
-        } catch (IllegalArgumentException ex) {
-            throw new IOException("Invalid ICC profile", ex);
-        }
+        return data;
     }
 }
@@ -0,0 +1,951 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Persistent cache of decoded regions, shared between processes on the
+// same host and across restarts.  Regions are keyed like
+// OpenSlideTileCache, and only cached for slides with a quickhash.
+//
+// The cache directory holds numbered segment files.  Each is a sequence of
+// records: a header, the encoded key, and the pixels, with a CRC32C over
+// the key and pixels.  Records are only ever appended, and segment files
+// never shrink, so other processes can safely map them.  Each process
+// builds an in-memory index by scanning the segments, and rescans
+// periodically to pick up records written by other processes.  Writers
+// serialize on a lock file.  A record truncated by a crash is skipped by
+// the scan, and its segment is not appended to again; a record whose
+// contents were damaged fails its checksum on first read and is ignored.
+// When the total size exceeds the capacity, the oldest segments are
+// deleted.
+//
+// Each segment has at most one current mapping, which is replaced by a
+// larger one only when a read needs records past its end.  Mappings are
+// unmapped once no reads are using them, and an evicted segment is only
+// deleted after its last mapping is gone; if another process still has it
+// mapped and the platform refuses the deletion, it's retried on the next
+// eviction.  The cache never fails a read: I/O errors are counted and
+// treated as misses.
+//
+// Stores are written by a background thread, so a read that misses only
+// pays for copying its pixels to the heap.  At most MAX_QUEUED_BYTES of
+// pixels wait to be written; stores beyond that are dropped and counted.
+public final class OpenSlideDiskCache implements AutoCloseable {
+    private static final int MAGIC = 0x4f535443;
+
+    // magic, key length, data length, CRC, reserved
+    private static final int HEADER_SIZE = 24;
+
+    private static final String SUFFIX = ".seg";
+
+    private static final long REFRESH_INTERVAL =
+            TimeUnit.SECONDS.toNanos(1);
+
+    private static final long MAX_QUEUED_BYTES = 64 << 20;
+
+    private static final AtomicInteger writerCount = new AtomicInteger();
+
+    // a store waiting for the writer thread
+    private static final class Write {
+        final TileKey key;
+
+        final ByteBuffer data;
+
+        Write(TileKey key, ByteBuffer data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
+
+    // tells the writer thread to exit
+    private static final Write STOP = new Write(null, null);
+
+    private static final class Segment {
+        final long id;
+
+        final Path path;
+
+        // end of the last structurally valid record; guarded by ioLock
+        long validEnd;
+
+        // true if there are bytes after validEnd; guarded by ioLock
+        boolean torn;
+
+        // guarded by ioLock
+        final List<TileKey> keys = new ArrayList<>();
+
+        // end of the indexed records; guarded by the cache
+        long indexedEnd;
+
+        // guarded by the cache
+        Mapping mapping;
+
+        // mappings not yet unmapped; guarded by the cache
+        int openMappings;
+
+        // no longer indexed; guarded by the cache
+        boolean removed;
+
+        // delete the file once openMappings reaches zero; guarded by the
+        // cache
+        boolean evicted;
+
+        Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private static final class Mapping {
+        final Segment owner;
+
+        final Arena arena;
+
+        final MemorySegment segment;
+
+        // reads in progress; guarded by the cache
+        int users;
+
+        // replaced or removed; unmap when users reaches zero.  Guarded by
+        // the cache.
+        boolean retired;
+
+        Mapping(Segment owner, Arena arena, MemorySegment segment) {
+            this.owner = owner;
+            this.arena = arena;
+            this.segment = segment;
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+
+        final long keyOffset;
+
+        final int keyLength;
+
+        final long dataLength;
+
+        final int crc;
+
+        // guarded by the cache
+        boolean verified;
+
+        Location(Segment segment, long keyOffset, int keyLength,
+                long dataLength, int crc) {
+            this.segment = segment;
+            this.keyOffset = keyOffset;
+            this.keyLength = keyLength;
+            this.dataLength = dataLength;
+            this.crc = crc;
+        }
+
+        long dataOffset() {
+            return keyOffset + pad(keyLength);
+        }
+
+        long end() {
+            return dataOffset() + dataLength;
+        }
+    }
+
+    private final Path dir;
+
+    private final long capacity;
+
+    private final long segmentSize;
+
+    // FileLock is per-process, so writers in this process also serialize
+    // on a lock per directory
+    private static final ConcurrentHashMap<Path, ReentrantLock> writeLocks =
+            new ConcurrentHashMap<>();
+
+    private final FileChannel lockChannel;
+
+    private final ReentrantLock writeLock;
+
+    // serializes this cache's directory and segment file I/O.  Held
+    // without the cache monitor, which only guards in-memory state.
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    // modified with both ioLock and this held
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    // guarded by this
+    private final Map<TileKey, Location> index = new HashMap<>();
+
+    // evicted segments whose files haven't been deleted; guarded by this
+    private final Map<Long, Segment> evicted = new HashMap<>();
+
+    private volatile long lastRefresh;
+
+    // bytes in indexed segments; written with this held
+    private volatile long size;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final LinkedBlockingQueue<Write> writes =
+            new LinkedBlockingQueue<>();
+
+    private final long maxQueuedBytes;
+
+    // bytes queued or being written, and stores not yet finished;
+    // guarded by writes
+    private long queuedBytes;
+
+    private int pending;
+
+    private boolean closed;
+
+    private final Thread writer;
+
+    public OpenSlideDiskCache(Path dir, long capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.dir = dir;
+        this.capacity = capacity;
+        segmentSize = Math.max(capacity / 8, 1 << 20);
+        Files.createDirectories(dir);
+        writeLock = writeLocks.computeIfAbsent(
+                dir.toAbsolutePath().normalize(), k -> new ReentrantLock());
+        lockChannel = FileChannel.open(dir.resolve("lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ioLock.lock();
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        } finally {
+            ioLock.unlock();
+        }
+        maxQueuedBytes = Math.min(capacity, MAX_QUEUED_BYTES);
+        writer = new Thread(this::runWriter,
+                "openslide-disk-writer-" + writerCount.getAndIncrement());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static long pad(long n) {
+        return (n + 7) & ~7L;
+    }
+
+    // copy cached pixels into dest; returns false on a miss
+    boolean get(TileKey key, MemorySegment dest) {
+        try {
+            if (lookup(key, dest)) {
+                hits.incrementAndGet();
+                return true;
+            }
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    private boolean lookup(TileKey key, MemorySegment dest)
+            throws IOException {
+        // if another thread is already rescanning, use the current index
+        if (System.nanoTime() - lastRefresh > REFRESH_INTERVAL
+                && ioLock.tryLock()) {
+            try {
+                if (System.nanoTime() - lastRefresh > REFRESH_INTERVAL) {
+                    refresh();
+                }
+            } finally {
+                ioLock.unlock();
+            }
+        }
+
+        Location loc;
+        Mapping m;
+        long mapSize;
+        synchronized (this) {
+            loc = index.get(key);
+            if (loc == null || loc.dataLength != key.getByteSize()) {
+                return false;
+            }
+            m = acquire(loc);
+            mapSize = loc.segment.indexedEnd;
+        }
+        if (m == null) {
+            m = map(loc.segment, mapSize);
+            if (m == null) {
+                return false;
+            }
+        }
+
+        try {
+            MemorySegment data = m.segment.asSlice(loc.dataOffset(),
+                    loc.dataLength);
+            boolean verified;
+            synchronized (this) {
+                verified = loc.verified;
+            }
+            if (!verified) {
+                CRC32C crc = new CRC32C();
+                update(crc, m.segment.asSlice(loc.keyOffset, loc.keyLength));
+                update(crc, data);
+                synchronized (this) {
+                    if ((int) crc.getValue() != loc.crc) {
+                        // damaged record
+                        index.remove(key, loc);
+                        return false;
+                    }
+                    loc.verified = true;
+                }
+            }
+            MemorySegment.copy(data, 0, dest, 0, loc.dataLength);
+            return true;
+        } finally {
+            release(m);
+        }
+    }
+
+    // the current mapping of the location's segment, if it covers the
+    // record; called with this locked
+    private Mapping acquire(Location loc) {
+        Mapping m = loc.segment.mapping;
+        if (m == null || m.segment.byteSize() < loc.end()) {
+            return null;
+        }
+        m.users++;
+        return m;
+    }
+
+    // map the first size bytes of the segment and make it the current
+    // mapping, unless it was evicted or mapped further meanwhile.  Returns
+    // the acquired current mapping, or null if the segment is gone.
+    private Mapping map(Segment seg, long size) throws IOException {
+        Mapping fresh;
+        Arena arena = Arena.ofShared();
+        try (FileChannel ch = FileChannel.open(seg.path,
+                StandardOpenOption.READ)) {
+            fresh = new Mapping(seg, arena, ch.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size, arena));
+        } catch (NoSuchFileException e) {
+            arena.close();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+
+        Mapping result = null;
+        Mapping unused = null;
+        synchronized (this) {
+            seg.openMappings++;
+            Mapping cur = seg.mapping;
+            if (seg.removed) {
+                fresh.retired = true;
+                unused = fresh;
+            } else if (cur != null
+                    && cur.segment.byteSize() >= fresh.segment.byteSize()) {
+                fresh.retired = true;
+                unused = fresh;
+                result = cur;
+            } else {
+                seg.mapping = fresh;
+                if (cur != null) {
+                    cur.retired = true;
+                    if (cur.users == 0) {
+                        unused = cur;
+                    }
+                }
+                result = fresh;
+            }
+            if (result != null) {
+                result.users++;
+            }
+        }
+        if (unused != null) {
+            unmap(unused);
+        }
+        return result;
+    }
+
+    private void release(Mapping m) {
+        boolean unmap;
+        synchronized (this) {
+            unmap = --m.users == 0 && m.retired;
+        }
+        if (unmap) {
+            unmap(m);
+        }
+    }
+
+    // unmap a retired mapping with no users, and delete its segment if
+    // this was the last mapping of an evicted segment
+    private void unmap(Mapping m) {
+        m.arena.close();
+        boolean delete;
+        synchronized (this) {
+            delete = --m.owner.openMappings == 0 && m.owner.evicted;
+        }
+        if (delete) {
+            delete(m.owner);
+        }
+    }
+
+    private void delete(Segment seg) {
+        try {
+            Files.deleteIfExists(seg.path);
+            synchronized (this) {
+                evicted.remove(seg.id, seg);
+            }
+        } catch (IOException e) {
+            // probably still mapped by another process; retried on the
+            // next eviction
+        }
+    }
+
+    // queue the first key.getByteSize() bytes of src to be stored, unless
+    // the key is already cached or too many bytes are already queued
+    void put(TileKey key, MemorySegment src) {
+        long dataLength = key.getByteSize();
+        // write() makes the exact check once the key is encoded
+        if (dataLength == 0 || HEADER_SIZE + pad(dataLength) > segmentSize) {
+            return;
+        }
+        synchronized (this) {
+            if (index.containsKey(key)) {
+                return;
+            }
+        }
+        synchronized (writes) {
+            if (closed || queuedBytes + dataLength > maxQueuedBytes) {
+                dropped.incrementAndGet();
+                return;
+            }
+            queuedBytes += dataLength;
+            pending++;
+        }
+        // buffers of heap segments not backed by byte[], or of segments
+        // from shared arenas, can't be used for I/O
+        ByteBuffer data;
+        try {
+            data = ByteBuffer.allocate((int) dataLength);
+            MemorySegment.copy(src, 0, MemorySegment.ofBuffer(data), 0,
+                    dataLength);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            finished(dataLength);
+            throw e;
+        }
+        writes.add(new Write(key, data));
+    }
+
+    private void runWriter() {
+        while (true) {
+            Write w;
+            try {
+                w = writes.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (w == STOP) {
+                return;
+            }
+            try {
+                write(w.key, w.data);
+            } catch (IOException | RuntimeException e) {
+                errors.incrementAndGet();
+            } finally {
+                finished(w.data.capacity());
+            }
+        }
+    }
+
+    private void finished(long dataLength) {
+        synchronized (writes) {
+            queuedBytes -= dataLength;
+            if (--pending == 0) {
+                writes.notifyAll();
+            }
+        }
+    }
+
+    // wait until queued stores have been written
+    void flush() {
+        boolean interrupted = false;
+        synchronized (writes) {
+            while (pending > 0) {
+                try {
+                    writes.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void write(TileKey key, ByteBuffer dataBuf) throws IOException {
+        byte keyBytes[] = encodeKey(key);
+        long dataLength = dataBuf.capacity();
+        long recordSize = HEADER_SIZE + pad(keyBytes.length) + pad(dataLength);
+        if (recordSize > segmentSize) {
+            return;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(keyBytes);
+        crc.update(dataBuf.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate((int) (HEADER_SIZE
+                + pad(keyBytes.length))).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(keyBytes.length).putLong(dataLength)
+                .putInt((int) crc.getValue()).putInt(0).put(keyBytes);
+        header.position(0);
+        ByteBuffer padding = ByteBuffer.allocate(
+                (int) (pad(dataLength) - dataLength));
+
+        ioLock.lock();
+        writeLock.lock();
+        try (FileLock l = lockChannel.lock()) {
+            synchronized (this) {
+                if (index.containsKey(key)) {
+                    return;
+                }
+            }
+            boolean refreshed = false;
+            if (System.nanoTime() - lastRefresh > REFRESH_INTERVAL) {
+                refresh();
+                refreshed = true;
+            }
+
+            // catch up on the newest segment, moving to the next one if
+            // it's full or damaged
+            Segment seg = segments.isEmpty() ? segment(0) :
+                    segments.lastEntry().getValue();
+            while (true) {
+                try {
+                    scan(seg);
+                } catch (NoSuchFileException e) {
+                    // not created yet, or deleted by another process
+                    if (seg.validEnd > 0) {
+                        seg = segment(seg.id + 1);
+                        continue;
+                    }
+                }
+                if (!seg.torn && seg.validEnd + recordSize <= segmentSize) {
+                    break;
+                }
+                seg = segment(seg.id + 1);
+            }
+
+            long start = seg.validEnd;
+            try (FileChannel ch = FileChannel.open(seg.path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long pos = start;
+                ByteBuffer bufs[] = {header, dataBuf, padding};
+                while (header.hasRemaining() || dataBuf.hasRemaining()
+                        || padding.hasRemaining()) {
+                    ch.position(pos);
+                    pos += ch.write(bufs);
+                }
+            }
+            // we hold the lock file, so nothing else was appended
+            seg.validEnd = start + recordSize;
+            seg.keys.add(key);
+            synchronized (this) {
+                index.put(key, new Location(seg, start + HEADER_SIZE,
+                        keyBytes.length, dataLength, (int) crc.getValue()));
+                size += seg.validEnd - seg.indexedEnd;
+                seg.indexedEnd = seg.validEnd;
+            }
+
+            // retry refused deletions at the refresh interval
+            boolean pending;
+            synchronized (this) {
+                pending = !evicted.isEmpty();
+            }
+            if (size > capacity || (pending && refreshed)) {
+                evict();
+            }
+        } finally {
+            writeLock.unlock();
+            ioLock.unlock();
+        }
+    }
+
+    // the segment with the given id, adding it if it's new; called with
+    // ioLock held
+    private Segment segment(long id) {
+        Segment seg = segments.get(id);
+        if (seg == null) {
+            seg = new Segment(id, segmentPath(id));
+            synchronized (this) {
+                segments.put(id, seg);
+            }
+        }
+        return seg;
+    }
+
+    // called with ioLock and the lock file held
+    private void evict() throws IOException {
+        // retry deletions refused while another process had them mapped
+        List<Segment> retry = new ArrayList<>();
+        synchronized (this) {
+            for (Segment seg : evicted.values()) {
+                if (seg.openMappings == 0) {
+                    retry.add(seg);
+                }
+            }
+        }
+        for (Segment seg : retry) {
+            delete(seg);
+        }
+
+        Set<Long> ids = new HashSet<>(listSegments());
+        forget(ids);
+        long total = 0;
+        TreeMap<Long, Long> sizes = new TreeMap<>();
+        for (long id : ids) {
+            try {
+                long size = Files.size(segmentPath(id));
+                sizes.put(id, size);
+                total += size;
+            } catch (NoSuchFileException e) {
+                // already gone
+            }
+        }
+        while (total > capacity && sizes.size() > 1) {
+            Map.Entry<Long, Long> oldest = sizes.pollFirstEntry();
+            evict(oldest.getKey());
+            total -= oldest.getValue();
+        }
+    }
+
+    // drop a segment from the index and delete it once it's unmapped;
+    // called with ioLock held
+    private void evict(long id) {
+        Segment seg = segments.get(id);
+        if (seg == null) {
+            // never indexed by this process
+            seg = new Segment(id, segmentPath(id));
+        }
+        Mapping unused;
+        boolean delete;
+        synchronized (this) {
+            unused = remove(seg);
+            seg.evicted = true;
+            evicted.put(id, seg);
+            delete = unused == null && seg.openMappings == 0;
+        }
+        if (unused != null) {
+            unmap(unused);
+        } else if (delete) {
+            delete(seg);
+        }
+    }
+
+    // forget a segment, retiring its mapping.  Returns the mapping if it
+    // can be unmapped now.  Called with ioLock and this held.
+    private Mapping remove(Segment seg) {
+        if (segments.remove(seg.id, seg)) {
+            for (TileKey key : seg.keys) {
+                Location loc = index.get(key);
+                if (loc != null && loc.segment == seg) {
+                    index.remove(key);
+                }
+            }
+            size -= seg.indexedEnd;
+        }
+        seg.removed = true;
+        Mapping m = seg.mapping;
+        seg.mapping = null;
+        if (m == null) {
+            return null;
+        }
+        m.retired = true;
+        return m.users == 0 ? m : null;
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(String.format("%012d%s", id, SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+                "*" + SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(0,
+                            name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // not ours
+                }
+            }
+        }
+        return ids;
+    }
+
+    // sync the index with the segment files; called with ioLock held
+    private void refresh() throws IOException {
+        lastRefresh = System.nanoTime();
+        Set<Long> present = new HashSet<>(listSegments());
+
+        forget(present);
+        for (long id : present) {
+            try {
+                scan(segment(id));
+            } catch (NoSuchFileException e) {
+                // deleted since we listed it
+            }
+        }
+    }
+
+    // forget segments deleted by other processes, and remove evicted
+    // segments from present; called with ioLock held
+    private void forget(Set<Long> present) {
+        List<Mapping> unused = new ArrayList<>();
+        synchronized (this) {
+            present.removeAll(evicted.keySet());
+            for (Segment seg : new ArrayList<>(segments.values())) {
+                if (!present.contains(seg.id)) {
+                    Mapping m = remove(seg);
+                    if (m != null) {
+                        unused.add(m);
+                    }
+                }
+            }
+        }
+        for (Mapping m : unused) {
+            unmap(m);
+        }
+    }
+
+    // index new records appended to a segment; called with ioLock held
+    private void scan(Segment seg) throws IOException {
+        try (FileChannel ch = FileChannel.open(seg.path,
+                StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = seg.validEnd;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            List<Location> found = new ArrayList<>();
+            List<TileKey> keys = new ArrayList<>();
+            while (pos + HEADER_SIZE <= size) {
+                header.clear();
+                readFully(ch, header, pos);
+                header.flip();
+                int magic = header.getInt();
+                int keyLength = header.getInt();
+                long dataLength = header.getLong();
+                int crc = header.getInt();
+                long end = pos + HEADER_SIZE + pad(keyLength)
+                        + pad(dataLength);
+                if (magic != MAGIC || keyLength <= 0 || dataLength < 0
+                        || end > size) {
+                    break;
+                }
+                ByteBuffer keyBuf = ByteBuffer.allocate(keyLength);
+                readFully(ch, keyBuf, pos + HEADER_SIZE);
+                TileKey key = decodeKey(keyBuf.array());
+                if (key == null) {
+                    break;
+                }
+                found.add(new Location(seg, pos + HEADER_SIZE, keyLength,
+                        dataLength, crc));
+                keys.add(key);
+                pos = end;
+            }
+            seg.torn = pos != size;
+            if (pos == seg.validEnd) {
+                return;
+            }
+            seg.validEnd = pos;
+            seg.keys.addAll(keys);
+            synchronized (this) {
+                if (seg.removed) {
+                    return;
+                }
+                for (int i = 0; i < found.size(); i++) {
+                    index.put(keys.get(i), found.get(i));
+                }
+                this.size += pos - seg.indexedEnd;
+                seg.indexedEnd = pos;
+            }
+        }
+    }
+
+    // checksum a segment that may belong to a shared arena, whose
+    // buffers CRC32C can't read directly
+    private static void update(CRC32C crc, MemorySegment seg) {
+        byte buf[] = new byte[(int) Math.min(seg.byteSize(), 1 << 16)];
+        MemorySegment heap = MemorySegment.ofArray(buf);
+        for (long off = 0; off < seg.byteSize(); off += buf.length) {
+            int n = (int) Math.min(buf.length, seg.byteSize() - off);
+            MemorySegment.copy(seg, off, heap, 0, n);
+            crc.update(buf, 0, n);
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            int count = ch.read(buf, pos);
+            if (count < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            pos += count;
+        }
+    }
+
+    private static byte[] encodeKey(TileKey key) {
+        byte slide[] = key.getSlide().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(28 + slide.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(key.getLevel()).putLong(key.getX()).putLong(key.getY())
+                .putInt(key.getWidth()).putInt(key.getHeight()).put(slide);
+        return buf.array();
+    }
+
+    private static TileKey decodeKey(byte data[]) {
+        if (data.length < 28) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int level = buf.getInt();
+        long x = buf.getLong();
+        long y = buf.getLong();
+        int w = buf.getInt();
+        int h = buf.getInt();
+        String slide = new String(data, 28, data.length - 28,
+                StandardCharsets.UTF_8);
+        return new TileKey(slide, level, x, y, w, h);
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    // bytes in segment files known to this process
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // failed reads and writes, which were treated as misses or skipped
+    public long getErrors() {
+        return errors.get();
+    }
+
+    // stores skipped because too many were waiting to be written
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // unmaps segments once in-progress reads finish
+    @Override
+    public void close() throws IOException {
+        // finish queued stores
+        synchronized (writes) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        writes.add(STOP);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Mapping> unused = new ArrayList<>();
+        ioLock.lock();
+        try {
+            synchronized (this) {
+                for (Segment seg : new ArrayList<>(segments.values())) {
+                    Mapping m = remove(seg);
+                    if (m != null) {
+                        unused.add(m);
+                    }
+                }
+            }
+        } finally {
+            ioLock.unlock();
+        }
+        for (Mapping m : unused) {
+            unmap(m);
+        }
+        lockChannel.close();
+    }
+}
@@ -25,8 +25,10 @@ import java.lang.foreign.*;
 import static java.lang.foreign.ValueLayout.*;
 import java.lang.invoke.*;
 import java.lang.ref.Cleaner;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 // restricted method calls are expected
 // we take locks with try-with-resources that aren't accessed inside the block
@@ -42,6 +44,12 @@ class OpenSlideFFM {
     private static final MemoryLayout SIZE_T = Linker.nativeLinker()
             .canonicalLayouts().get("size_t");
 
+    // Decoding a region can take a while, during which a critical
+    // downcall would hold off the GC, so decoding directly into Java
+    // arrays is opt-in.
+    private static final boolean CRITICAL_READS = Boolean.getBoolean(
+            "org.openslide.criticalReads");
+
     private OpenSlideFFM() {
     }
 
@@ -74,19 +82,51 @@ class OpenSlideFFM {
 
     private static MethodHandle function(MemoryLayout ret, String name,
             MemoryLayout... args) {
-        MemorySegment symbol = SYMBOL_LOOKUP.find(name)
+        return Linker.nativeLinker().downcallHandle(symbol(name),
+                descriptor(ret, args));
+    }
+
+    // A critical function skips the thread state transition and can
+    // optionally be passed heap segments.  The GC can't run while a
+    // critical function is executing, so only use this for functions that
+    // return quickly.  Returns null if the linker doesn't support it.
+    private static MethodHandle criticalFunction(boolean allowHeapAccess,
+            MemoryLayout ret, String name, MemoryLayout... args) {
+        try {
+            return Linker.nativeLinker().downcallHandle(symbol(name),
+                    descriptor(ret, args),
+                    Linker.Option.critical(allowHeapAccess));
+        } catch (IllegalArgumentException | UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    // critical if possible, otherwise a regular downcall
+    private static MethodHandle fastFunction(MemoryLayout ret, String name,
+            MemoryLayout... args) {
+        MethodHandle handle = criticalFunction(false, ret, name, args);
+        if (handle == null) {
+            handle = function(ret, name, args);
+        }
+        return handle;
+    }
+
+    private static MemorySegment symbol(String name) {
+        return SYMBOL_LOOKUP.find(name)
                 .orElseThrow(() -> new UnsatisfiedLinkError(
                 "Unresolved symbol " + name + "; need OpenSlide >= 4.0.0"));
-        FunctionDescriptor desc;
+    }
+
+    private static FunctionDescriptor descriptor(MemoryLayout ret,
+            MemoryLayout... args) {
         if (ret != null) {
-            desc = FunctionDescriptor.of(ret, args);
+            return FunctionDescriptor.of(ret, args);
         } else {
-            desc = FunctionDescriptor.ofVoid(args);
+            return FunctionDescriptor.ofVoid(args);
         }
-        return Linker.nativeLinker().downcallHandle(symbol, desc);
     }
 
-    private static abstract class Ref {
+    static abstract class Ref {
         static abstract class Wrapper implements Runnable {
             private final MemorySegment segment;
 
@@ -100,63 +140,92 @@ class OpenSlideFFM {
         }
 
         static class ScopedLock implements AutoCloseable {
-            private final Lock lock;
-
-            ScopedLock(Lock lock) {
-                this.lock = lock;
-            }
+            private final Ref ref;
 
-            void lock() {
-                lock.lock();
+            ScopedLock(Ref ref) {
+                this.ref = ref;
             }
 
             @Override
             public void close() {
-                lock.unlock();
+                ref.unlock();
             }
         }
 
         private static final Cleaner cleaner = Cleaner.create();
 
+        // Readers are counted in stripes selected by thread ID, each on
+        // its own cache line, so concurrent readers rarely write to the
+        // same line.  close() sets closing and then waits for every
+        // stripe to drain.  Since both sides write their own variable
+        // before reading the other's, either the reader sees closing and
+        // backs out, or close() sees the reader and waits for it.
+        private static final int STRIPES = Math.min(64, Integer.highestOneBit(
+                Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+        // longs per cache line
+        private static final int PAD = 8;
+
         private Wrapper wrapper;
 
         private final Cleaner.Cleanable cleanable;
 
-        private final ReentrantReadWriteLock lock =
-                new ReentrantReadWriteLock();
+        private final AtomicLongArray readers =
+                new AtomicLongArray(STRIPES * PAD);
 
-        private final ScopedLock readLock = new ScopedLock(lock.readLock());
+        private volatile boolean closing;
 
-        private final ScopedLock writeLock = new ScopedLock(lock.writeLock());
+        private final ScopedLock scopedLock = new ScopedLock(this);
 
         Ref(Wrapper wrapper) {
             this.wrapper = wrapper;
             cleanable = cleaner.register(this, wrapper);
         }
 
+        private static int stripe() {
+            return (int) (Thread.currentThread().threadId() & (STRIPES - 1))
+                    * PAD;
+        }
+
         ScopedLock lock() {
-            readLock.lock();
-            return readLock;
+            int stripe = stripe();
+            readers.getAndIncrement(stripe);
+            if (closing) {
+                readers.getAndDecrement(stripe);
+                throw new OpenSlideDisposedException(
+                        this.getClass().getSimpleName());
+            }
+            return scopedLock;
         }
 
-        private ScopedLock writeLock() {
-            writeLock.lock();
-            return writeLock;
+        private void unlock() {
+            readers.getAndDecrement(stripe());
         }
 
         MemorySegment getSegment() {
-            if (lock.getReadHoldCount() == 0) {
+            // only catches misuse when no other thread shares our stripe,
+            // but that's enough to flag a missing lock() in testing
+            if (readers.get(stripe()) == 0) {
                 throw new IllegalStateException("Reference lock not held");
             }
-            if (wrapper == null) {
-                throw new OpenSlideDisposedException(
-                        this.getClass().getSimpleName());
-            }
             return wrapper.getSegment();
         }
 
         void close() {
-            try (ScopedLock l = writeLock()) {
+            synchronized (this) {
+                if (closing) {
+                    return;
+                }
+                closing = true;
+                for (int i = 0; i < readers.length(); i += PAD) {
+                    for (int spins = 0; readers.get(i) != 0; spins++) {
+                        if (spins < 100) {
+                            Thread.onSpinWait();
+                        } else {
+                            LockSupport.parkNanos(10_000);
+                        }
+                    }
+                }
                 cleanable.clean();
                 wrapper = null;
             }
@@ -223,6 +292,17 @@ class OpenSlideFFM {
         return ret;
     }
 
+    // NUL-terminated UTF-8 string for passing to critical functions
+    private static MemorySegment heapString(String s) {
+        byte utf8[] = s.getBytes(StandardCharsets.UTF_8);
+        return MemorySegment.ofArray(Arrays.copyOf(utf8, utf8.length + 1));
+    }
+
+    // upper bound on the size of a NUL-terminated UTF-8 string
+    private static long stringSize(String s) {
+        return 3L * s.length() + 1;
+    }
+
     private static RuntimeException wrapException(Throwable ex) {
         if (ex instanceof RuntimeException) {
             return (RuntimeException) ex;
@@ -235,9 +315,10 @@ class OpenSlideFFM {
 
     static String openslide_detect_vendor(String filename) {
         MemorySegment ret;
-        try (Arena arena = Arena.ofConfined()) {
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                stringSize(filename))) {
             ret = (MemorySegment) detect_vendor.invokeExact(
-                    arena.allocateFrom(filename));
+                    scratch.allocateFrom(filename));
         } catch (Throwable ex) {
             throw wrapException(ex);
         }
@@ -252,9 +333,10 @@ class OpenSlideFFM {
 
     static OpenSlideRef openslide_open(String filename) {
         MemorySegment ret;
-        try (Arena arena = Arena.ofConfined()) {
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                stringSize(filename))) {
             ret = (MemorySegment) open.invokeExact(
-                    arena.allocateFrom(filename));
+                    scratch.allocateFrom(filename));
         } catch (Throwable ex) {
             throw wrapException(ex);
         }
@@ -264,7 +346,7 @@ class OpenSlideFFM {
         return new OpenSlideRef(ret);
     }
 
-    private static final MethodHandle get_level_count = function(
+    private static final MethodHandle get_level_count = fastFunction(
             JAVA_INT, "openslide_get_level_count", C_POINTER);
 
     static int openslide_get_level_count(OpenSlideRef osr) {
@@ -279,11 +361,28 @@ class OpenSlideFFM {
             null, "openslide_get_level_dimensions", C_POINTER, JAVA_INT,
             C_POINTER, C_POINTER);
 
+    private static final MethodHandle get_level_dimensions_heap =
+            criticalFunction(true, null, "openslide_get_level_dimensions",
+            C_POINTER, JAVA_INT, C_POINTER, C_POINTER);
+
     static void openslide_get_level_dimensions(OpenSlideRef osr, int level,
             long dim[]) {
-        try (Arena arena = Arena.ofConfined()) {
-            MemorySegment w = arena.allocateFrom(JAVA_LONG, 0);
-            MemorySegment h = arena.allocateFrom(JAVA_LONG, 0);
+        if (get_level_dimensions_heap != null) {
+            MemorySegment buf = MemorySegment.ofArray(dim);
+            try (Ref.ScopedLock l = osr.lock()) {
+                get_level_dimensions_heap.invokeExact(osr.getSegment(), level,
+                        buf.asSlice(0, JAVA_LONG.byteSize()),
+                        buf.asSlice(JAVA_LONG.byteSize(),
+                        JAVA_LONG.byteSize()));
+            } catch (Throwable ex) {
+                throw wrapException(ex);
+            }
+            return;
+        }
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                2 * JAVA_LONG.byteSize())) {
+            MemorySegment w = scratch.allocateFrom(JAVA_LONG, 0);
+            MemorySegment h = scratch.allocateFrom(JAVA_LONG, 0);
             try (Ref.ScopedLock l = osr.lock()) {
                 get_level_dimensions.invokeExact(osr.getSegment(), level, w, h);
             } catch (Throwable ex) {
@@ -294,7 +393,7 @@ class OpenSlideFFM {
         }
     }
 
-    private static final MethodHandle get_level_downsample = function(
+    private static final MethodHandle get_level_downsample = fastFunction(
             JAVA_DOUBLE, "openslide_get_level_downsample", C_POINTER, JAVA_INT);
 
     static double openslide_get_level_downsample(OpenSlideRef osr, int level) {
@@ -310,21 +409,46 @@ class OpenSlideFFM {
             null, "openslide_read_region", C_POINTER, C_POINTER,
             JAVA_LONG, JAVA_LONG, JAVA_INT, JAVA_LONG, JAVA_LONG);
 
+    private static final MethodHandle read_region_heap = CRITICAL_READS ?
+            criticalFunction(true, null, "openslide_read_region", C_POINTER,
+            C_POINTER, JAVA_LONG, JAVA_LONG, JAVA_INT, JAVA_LONG, JAVA_LONG) :
+            null;
+
     static void openslide_read_region(OpenSlideRef osr, int dest[],
             long x, long y, int level, long w, long h) {
-        try (Arena arena = Arena.ofConfined()) {
-            MemorySegment buf = arena.allocate(JAVA_INT, dest.length);
-            try (Ref.ScopedLock l = osr.lock()) {
-                read_region.invokeExact(osr.getSegment(), buf, x, y,
-                        level, w, h);
-            } catch (Throwable ex) {
-                throw wrapException(ex);
+        openslide_read_region(osr, MemorySegment.ofArray(dest), x, y, level,
+                w, h);
+    }
+
+    // dest must have room for w * h pixels.  Heap segments are decoded
+    // into directly if critical reads are enabled, and otherwise through
+    // a scratch buffer.
+    static void openslide_read_region(OpenSlideRef osr, MemorySegment dest,
+            long x, long y, int level, long w, long h) {
+        MethodHandle handle = read_region;
+        if (!dest.isNative()) {
+            if (read_region_heap != null) {
+                handle = read_region_heap;
+            } else {
+                long size = w * h * JAVA_INT.byteSize();
+                try (NativeBufferPool.Scratch scratch =
+                        NativeBufferPool.acquire(size)) {
+                    MemorySegment buf = scratch.allocate(size,
+                            JAVA_INT.byteAlignment());
+                    openslide_read_region(osr, buf, x, y, level, w, h);
+                    MemorySegment.copy(buf, 0, dest, 0, size);
+                }
+                return;
             }
-            MemorySegment.copy(buf, JAVA_INT, 0, dest, 0, dest.length);
+        }
+        try (Ref.ScopedLock l = osr.lock()) {
+            handle.invokeExact(osr.getSegment(), dest, x, y, level, w, h);
+        } catch (Throwable ex) {
+            throw wrapException(ex);
         }
     }
 
-    private static final MethodHandle get_icc_profile_size = function(
+    private static final MethodHandle get_icc_profile_size = fastFunction(
             JAVA_LONG, "openslide_get_icc_profile_size", C_POINTER);
 
     static long openslide_get_icc_profile_size(OpenSlideRef osr) {
@@ -339,8 +463,9 @@ class OpenSlideFFM {
             null, "openslide_read_icc_profile", C_POINTER, C_POINTER);
 
     static void openslide_read_icc_profile(OpenSlideRef osr, byte dest[]) {
-        try (Arena arena = Arena.ofConfined()) {
-            MemorySegment buf = arena.allocate(JAVA_BYTE, dest.length);
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                dest.length)) {
+            MemorySegment buf = scratch.allocate(JAVA_BYTE, dest.length);
             try (Ref.ScopedLock l = osr.lock()) {
                 read_icc_profile.invokeExact(osr.getSegment(), buf);
             } catch (Throwable ex) {
@@ -350,7 +475,7 @@ class OpenSlideFFM {
         }
     }
 
-    private static final MethodHandle get_error = function(
+    private static final MethodHandle get_error = fastFunction(
             C_POINTER, "openslide_get_error", C_POINTER);
 
     static String openslide_get_error(OpenSlideRef osr) {
@@ -368,7 +493,7 @@ class OpenSlideFFM {
         }
     }
 
-    private static final MethodHandle get_property_names = function(
+    private static final MethodHandle get_property_names = fastFunction(
             C_POINTER, "openslide_get_property_names", C_POINTER);
 
     static String[] openslide_get_property_names(OpenSlideRef osr) {
@@ -387,12 +512,31 @@ class OpenSlideFFM {
     private static final MethodHandle get_property_value = function(
             C_POINTER, "openslide_get_property_value", C_POINTER, C_POINTER);
 
+    private static final MethodHandle get_property_value_heap =
+            criticalFunction(true, C_POINTER, "openslide_get_property_value",
+            C_POINTER, C_POINTER);
+
     static String openslide_get_property_value(OpenSlideRef osr, String name) {
         MemorySegment ret;
+        if (get_property_value_heap != null) {
+            try (Ref.ScopedLock l = osr.lock()) {
+                try {
+                    ret = (MemorySegment) get_property_value_heap.invokeExact(
+                            osr.getSegment(), heapString(name));
+                } catch (Throwable ex) {
+                    throw wrapException(ex);
+                }
+                if (ret.equals(MemorySegment.NULL)) {
+                    return null;
+                }
+                return ret.getString(0);
+            }
+        }
         try (Ref.ScopedLock l = osr.lock()) {
-            try (Arena arena = Arena.ofConfined()) {
+            try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                    stringSize(name))) {
                 ret = (MemorySegment) get_property_value.invokeExact(
-                        osr.getSegment(), arena.allocateFrom(name));
+                        osr.getSegment(), scratch.allocateFrom(name));
             } catch (Throwable ex) {
                 throw wrapException(ex);
             }
@@ -403,7 +547,7 @@ class OpenSlideFFM {
         }
     }
 
-    private static final MethodHandle get_associated_image_names = function(
+    private static final MethodHandle get_associated_image_names = fastFunction(
             C_POINTER, "openslide_get_associated_image_names", C_POINTER);
 
     static String[] openslide_get_associated_image_names(OpenSlideRef osr) {
@@ -425,12 +569,13 @@ class OpenSlideFFM {
 
     static void openslide_get_associated_image_dimensions(OpenSlideRef osr,
             String name, long dim[]) {
-        try (Arena arena = Arena.ofConfined()) {
-            MemorySegment w = arena.allocateFrom(JAVA_LONG, 0);
-            MemorySegment h = arena.allocateFrom(JAVA_LONG, 0);
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                2 * JAVA_LONG.byteSize() + stringSize(name))) {
+            MemorySegment w = scratch.allocateFrom(JAVA_LONG, 0);
+            MemorySegment h = scratch.allocateFrom(JAVA_LONG, 0);
             try (Ref.ScopedLock l = osr.lock()) {
                 get_associated_image_dimensions.invokeExact(osr.getSegment(),
-                        arena.allocateFrom(name), w, h);
+                        scratch.allocateFrom(name), w, h);
             } catch (Throwable ex) {
                 throw wrapException(ex);
             }
@@ -443,13 +588,28 @@ class OpenSlideFFM {
             null, "openslide_read_associated_image", C_POINTER, C_POINTER,
             C_POINTER);
 
+    private static final MethodHandle read_associated_image_heap =
+            CRITICAL_READS ? criticalFunction(true, null,
+            "openslide_read_associated_image", C_POINTER, C_POINTER,
+            C_POINTER) : null;
+
     static void openslide_read_associated_image(OpenSlideRef osr, String name,
             int dest[]) {
-        try (Arena arena = Arena.ofConfined()) {
-            MemorySegment buf = arena.allocate(JAVA_INT, dest.length);
+        if (read_associated_image_heap != null) {
+            try (Ref.ScopedLock l = osr.lock()) {
+                read_associated_image_heap.invokeExact(osr.getSegment(),
+                        heapString(name), MemorySegment.ofArray(dest));
+            } catch (Throwable ex) {
+                throw wrapException(ex);
+            }
+            return;
+        }
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                dest.length * JAVA_INT.byteSize() + stringSize(name))) {
+            MemorySegment buf = scratch.allocate(JAVA_INT, dest.length);
             try (Ref.ScopedLock l = osr.lock()) {
                 read_associated_image.invokeExact(osr.getSegment(),
-                        arena.allocateFrom(name), buf);
+                        scratch.allocateFrom(name), buf);
             } catch (Throwable ex) {
                 throw wrapException(ex);
             }
@@ -463,9 +623,10 @@ class OpenSlideFFM {
 
     static long openslide_get_associated_image_icc_profile_size(
             OpenSlideRef osr, String name) {
-        try (Arena arena = Arena.ofConfined(); Ref.ScopedLock l = osr.lock()) {
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                stringSize(name)); Ref.ScopedLock l = osr.lock()) {
             return (long) get_associated_image_icc_profile_size.invokeExact(
-                    osr.getSegment(), arena.allocateFrom(name));
+                    osr.getSegment(), scratch.allocateFrom(name));
         } catch (Throwable ex) {
             throw wrapException(ex);
         }
@@ -477,11 +638,12 @@ class OpenSlideFFM {
 
     static void openslide_read_associated_image_icc_profile(OpenSlideRef osr,
             String name, byte dest[]) {
-        try (Arena arena = Arena.ofConfined()) {
-            MemorySegment buf = arena.allocate(JAVA_BYTE, dest.length);
+        try (NativeBufferPool.Scratch scratch = NativeBufferPool.acquire(
+                dest.length + stringSize(name))) {
+            MemorySegment buf = scratch.allocate(JAVA_BYTE, dest.length);
             try (Ref.ScopedLock l = osr.lock()) {
                 read_associated_image_icc_profile.invokeExact(osr.getSegment(),
-                        arena.allocateFrom(name), buf);
+                        scratch.allocateFrom(name), buf);
             } catch (Throwable ex) {
                 throw wrapException(ex);
             }
@@ -0,0 +1,287 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Shares open OpenSlide handles between users.  Handles are keyed by
+// canonical path and reference-counted through leases.  Handles with no
+// outstanding leases are closed in LRU order when more than maxOpen are
+// open, or once they have been idle for longer than the idle timeout.
+public final class OpenSlidePool implements AutoCloseable {
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public OpenSlide getOpenSlide() {
+            return entry.slide;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+
+    private static class Entry {
+        final File file;
+
+        final CompletableFuture<OpenSlide> opened = new CompletableFuture<>();
+
+        OpenSlide slide;
+
+        int refs;
+
+        long idleSince;
+
+        Entry(File file) {
+            this.file = file;
+        }
+    }
+
+    private final int maxOpen;
+
+    private final long idleTimeoutNanos;
+
+    // access-ordered, so iteration starts with the least recently used
+    private final LinkedHashMap<File, Entry> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private final OpenSlide.OpenOption options[];
+
+    private final ScheduledExecutorService reaper;
+
+    private boolean closed;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private long openNanos;
+
+    // options are passed to the OpenSlide constructor
+    public OpenSlidePool(int maxOpen, Duration idleTimeout,
+            OpenSlide.OpenOption... options) {
+        if (maxOpen <= 0) {
+            throw new IllegalArgumentException("maxOpen must be positive");
+        }
+        if (idleTimeout.isNegative()) {
+            throw new IllegalArgumentException(
+                    "idleTimeout must be nonnegative");
+        }
+        this.maxOpen = maxOpen;
+        this.options = options.clone();
+        idleTimeoutNanos = idleTimeout.toNanos();
+        if (idleTimeoutNanos > 0) {
+            reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "openslide-pool-reaper");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(idleTimeoutNanos / 2,
+                    TimeUnit.MILLISECONDS.toNanos(100));
+            reaper.scheduleWithFixedDelay(this::evict, period, period,
+                    TimeUnit.NANOSECONDS);
+        } else {
+            reaper = null;
+        }
+    }
+
+    // the caller must close the lease when finished with the slide
+    public Lease acquire(File file) throws IOException {
+        File key = file.getCanonicalFile();
+        Entry entry;
+        boolean opener = false;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Pool has been closed");
+            }
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+                opener = true;
+                misses++;
+            } else {
+                hits++;
+            }
+            entry.refs++;
+        }
+
+        if (opener) {
+            open(entry);
+            evict();
+        }
+        try {
+            entry.opened.get();
+        } catch (InterruptedException e) {
+            release(entry);
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            throw new IOException(cause);
+        }
+        return new Lease(entry);
+    }
+
+    private void open(Entry entry) {
+        long start = System.nanoTime();
+        OpenSlide slide = null;
+        try {
+            slide = new OpenSlide(entry.file, options);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                openNanos += System.nanoTime() - start;
+                entries.remove(entry.file, entry);
+            }
+            entry.opened.completeExceptionally(e);
+            return;
+        }
+        // if the pool has been closed in the meantime, release() will
+        // close the slide when the last lease goes away
+        synchronized (this) {
+            openNanos += System.nanoTime() - start;
+            entry.slide = slide;
+        }
+        entry.opened.complete(slide);
+    }
+
+    private void release(Entry entry) {
+        boolean close;
+        synchronized (this) {
+            if (--entry.refs > 0) {
+                return;
+            }
+            entry.idleSince = System.nanoTime();
+            close = closed && entry.slide != null;
+        }
+        if (close) {
+            entry.slide.close();
+        } else {
+            evict();
+        }
+    }
+
+    // close idle handles that are past the idle timeout or over the cap
+    private void evict() {
+        List<OpenSlide> victims = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            int excess = entries.size() - maxOpen;
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.refs > 0 || entry.slide == null) {
+                    continue;
+                }
+                boolean expired = idleTimeoutNanos > 0 &&
+                        now - entry.idleSince >= idleTimeoutNanos;
+                if (excess > 0 || expired) {
+                    it.remove();
+                    victims.add(entry.slide);
+                    evictions++;
+                    excess--;
+                }
+            }
+        }
+        for (OpenSlide slide : victims) {
+            slide.close();
+        }
+    }
+
+    // number of handles currently open or being opened
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // total time spent opening slides, including failed attempts
+    public synchronized long getTotalOpenNanos() {
+        return openNanos;
+    }
+
+    // handles with outstanding leases are closed when their last lease is
+    // closed
+    @Override
+    public void close() {
+        List<OpenSlide> victims = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.refs == 0 && entry.slide != null) {
+                    victims.add(entry.slide);
+                }
+                it.remove();
+            }
+        }
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        for (OpenSlide slide : victims) {
+            slide.close();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Watches the regions read from a slide and reads the regions likely to
+// be requested next, so they are already in the slide's caches: the
+// OpenSlideTileCache and OpenSlideDiskCache if set, and OpenSlide's own
+// cache.  Predictions are the neighbors of each request in the current
+// pan direction, and the regions covering it in the next level in the
+// current zoom direction, for requests near the center of recent
+// activity.  Neighbors are exact for viewers that read a regular grid of
+// tiles; otherwise prefetching still warms OpenSlide's cache.
+//
+// Prefetches run on low-priority daemon threads, only while no other
+// reads of the slide are in progress.  At most maxQueued predictions are
+// kept, newest first, and predictions older than staleAfter or more than
+// one level from the current level are dropped unread.  Staleness is only
+// checked before a prefetch starts: one already reading runs to
+// completion even if the viewer moves on or a foreground read begins.
+// Memory use is one region per thread plus whatever the caches are
+// configured to hold.
+public final class OpenSlidePrefetcher implements AutoCloseable {
+    private static final class Prediction {
+        final TileKey key;
+
+        final long created = System.nanoTime();
+
+        Prediction(TileKey key) {
+            this.key = key;
+        }
+    }
+
+    // weight of each new request in the smoothed center and velocity
+    private static final double CENTER_WEIGHT = 0.2;
+
+    private static final double VELOCITY_WEIGHT = 0.3;
+
+    // minimum pan speed, in tiles per second
+    private static final double MIN_SPEED = 0.5;
+
+    // maximum regions to read in the next level for one request
+    private static final int MAX_ZOOM_TILES = 4;
+
+    private final OpenSlide os;
+
+    private final int maxQueued;
+
+    private final long staleNanos;
+
+    private final LinkedBlockingDeque<Prediction> queue =
+            new LinkedBlockingDeque<>();
+
+    private final Set<TileKey> queued = ConcurrentHashMap.newKeySet();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    // foreground reads in progress
+    private final AtomicInteger active = new AtomicInteger();
+
+    // signalled when active drops to zero
+    private final Object idle = new Object();
+
+    // threads waiting on idle; written with idle locked
+    private volatile int waiting;
+
+    private final AtomicLong issued = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean closed;
+
+    // guarded by this
+    private int level = -1;
+
+    // -1 zooming in, 1 zooming out, 0 unknown
+    private int zoom;
+
+    private double centerX;
+
+    private double centerY;
+
+    private double velocityX;
+
+    private double velocityY;
+
+    private long lastTime;
+
+    // attaches itself to os
+    public OpenSlidePrefetcher(OpenSlide os, int threads, int maxQueued,
+            Duration staleAfter) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException(
+                    "maxQueued must be positive");
+        }
+        this.os = os;
+        this.maxQueued = maxQueued;
+        staleNanos = staleAfter.toNanos();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::run, "openslide-prefetch-" + i);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            this.threads.add(t);
+        }
+        for (Thread t : this.threads) {
+            t.start();
+        }
+        os.setPrefetcher(this);
+    }
+
+    // called before each foreground read, which must call end() even if
+    // this throws.  Never fails the read: invalid requests are left for
+    // the read to reject.
+    void begin(long x, long y, int level, int w, int h) {
+        active.incrementAndGet();
+        if (closed || w <= 0 || h <= 0 || level < 0
+                || level >= os.getLevelCount()) {
+            return;
+        }
+        try {
+            observe(x, y, level, w, h);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    // update the access pattern and queue predictions
+    private void observe(long x, long y, int level, int w, int h) {
+        double downsample = os.getLevelDownsample(level);
+        double stepX = w * downsample;
+        double stepY = h * downsample;
+        double cx = x + stepX / 2;
+        double cy = y + stepY / 2;
+        long now = System.nanoTime();
+
+        int panX;
+        int panY;
+        int zoomDir;
+        boolean nearCenter;
+        synchronized (this) {
+            if (level != this.level) {
+                if (this.level >= 0) {
+                    zoom = level < this.level ? -1 : 1;
+                }
+                this.level = level;
+                centerX = cx;
+                centerY = cy;
+                velocityX = 0;
+                velocityY = 0;
+            } else {
+                double dt = Math.max(1e-3, (now - lastTime) / 1e9);
+                double nx = centerX + CENTER_WEIGHT * (cx - centerX);
+                double ny = centerY + CENTER_WEIGHT * (cy - centerY);
+                velocityX += VELOCITY_WEIGHT * ((nx - centerX) / dt
+                        - velocityX);
+                velocityY += VELOCITY_WEIGHT * ((ny - centerY) / dt
+                        - velocityY);
+                centerX = nx;
+                centerY = ny;
+            }
+            lastTime = now;
+            panX = direction(velocityX, stepX);
+            panY = direction(velocityY, stepY);
+            zoomDir = zoom;
+            nearCenter = Math.abs(cx - centerX) <= 1.5 * stepX
+                    && Math.abs(cy - centerY) <= 1.5 * stepY;
+        }
+
+        if (panX != 0 || panY != 0) {
+            predict(level, x + (long) (panX * stepX),
+                    y + (long) (panY * stepY), w, h);
+            if (panX != 0 && panY != 0) {
+                predict(level, x + (long) (panX * stepX), y, w, h);
+                predict(level, x, y + (long) (panY * stepY), w, h);
+            }
+        }
+        if (nearCenter) {
+            int next = zoomDir > 0 ? level + 1 : level - 1;
+            if (next >= 0 && next < os.getLevelCount()) {
+                predictCovering(next, x, y, stepX, stepY, w, h);
+            }
+        }
+        trim();
+    }
+
+    // called after each foreground read
+    void end() {
+        // both sides write their own variable before reading the other's,
+        // so either a waiter sees active at zero or we see the waiter
+        if (active.decrementAndGet() == 0 && waiting > 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private static int direction(double velocity, double step) {
+        if (velocity > MIN_SPEED * step) {
+            return 1;
+        } else if (velocity < -MIN_SPEED * step) {
+            return -1;
+        }
+        return 0;
+    }
+
+    // the w x h regions of level, on a grid from the origin, that cover
+    // the given level 0 area
+    private void predictCovering(int level, long x, long y, double l0W,
+            double l0H, int w, int h) {
+        double downsample = os.getLevelDownsample(level);
+        long tx0 = (long) Math.floor(x / downsample / w);
+        long ty0 = (long) Math.floor(y / downsample / h);
+        long tx1 = (long) Math.floor((x + l0W - 1) / downsample / w);
+        long ty1 = (long) Math.floor((y + l0H - 1) / downsample / h);
+        int count = 0;
+        for (long ty = ty0; ty <= ty1; ty++) {
+            for (long tx = tx0; tx <= tx1 && count < MAX_ZOOM_TILES; tx++) {
+                predict(level, (long) (tx * w * downsample),
+                        (long) (ty * h * downsample), w, h);
+                count++;
+            }
+        }
+    }
+
+    private void predict(int level, long x, long y, int w, int h) {
+        if (x < 0 || y < 0 || x >= os.getLevel0Width()
+                || y >= os.getLevel0Height()) {
+            return;
+        }
+        TileKey key = new TileKey("", level, x, y, w, h);
+        if (queued.add(key)) {
+            queue.offerFirst(new Prediction(key));
+        }
+    }
+
+    // drop the oldest predictions beyond the limit
+    private void trim() {
+        while (queue.size() > maxQueued) {
+            Prediction p = queue.pollLast();
+            if (p == null) {
+                break;
+            }
+            queued.remove(p.key);
+            dropped.incrementAndGet();
+        }
+    }
+
+    private boolean isStale(Prediction p) {
+        if (System.nanoTime() - p.created > staleNanos) {
+            return true;
+        }
+        synchronized (this) {
+            return Math.abs(p.key.getLevel() - level) > 1;
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            Prediction p;
+            try {
+                p = queue.pollFirst(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (p == null) {
+                continue;
+            }
+            try {
+                awaitIdle(p);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queued.remove(p.key);
+            if (closed) {
+                return;
+            }
+            if (isStale(p)) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            TileKey key = p.key;
+            long bytes = key.getByteSize();
+            try (NativeBufferPool.Scratch scratch =
+                    NativeBufferPool.acquire(bytes)) {
+                MemorySegment dest = scratch.allocate(bytes, Integer.BYTES);
+                os.prefetch(dest, key.getX(), key.getY(), key.getLevel(),
+                        key.getWidth(), key.getHeight());
+                issued.incrementAndGet();
+            } catch (OpenSlideDisposedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    // yield to foreground reads: wait until none are in progress, we're
+    // closed, or p goes stale
+    private void awaitIdle(Prediction p) throws InterruptedException {
+        synchronized (idle) {
+            waiting++;
+            try {
+                while (active.get() > 0 && !closed && !isStale(p)) {
+                    // wake in time to drop p if it goes stale first
+                    TimeUnit.NANOSECONDS.timedWait(idle, staleNanos
+                            - (System.nanoTime() - p.created));
+                }
+            } finally {
+                waiting--;
+            }
+        }
+    }
+
+    // regions read ahead of time
+    public long getIssued() {
+        return issued.get();
+    }
+
+    // predictions discarded unread
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // failed prefetches and predictions
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    // detach from the slide and stop prefetching
+    @Override
+    public void close() {
+        closed = true;
+        os.clearPrefetcher(this);
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        queue.clear();
+        queued.clear();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+// Persistent cache of whole-slide thumbnails, keyed by quickhash, color
+// mode, and maximum size.  Thumbnails are stored as PNG files, written to a
+// temporary name and renamed into place, so processes on the same host
+// can share the directory.  Reading a thumbnail updates its modification
+// time, and when the total size exceeds the capacity, the least recently
+// used thumbnails are deleted.  Like OpenSlideDiskCache, the cache never
+// fails a thumbnail: I/O errors are counted, unreadable thumbnails are
+// deleted and treated as misses, and failed stores are skipped.
+public final class OpenSlideThumbnailCache {
+    private static final String SUFFIX = ".png";
+
+    private final Path dir;
+
+    private final long capacity;
+
+    private final AtomicLong size = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    public OpenSlideThumbnailCache(Path dir, long capacity)
+            throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "capacity must be nonnegative");
+        }
+        this.dir = dir;
+        this.capacity = capacity;
+        Files.createDirectories(dir);
+        trim();
+    }
+
+    // returns null on a miss
+    BufferedImage get(String quickhash, boolean srgb, int maxSize) {
+        Path file = path(quickhash, srgb, maxSize);
+        BufferedImage img;
+        try (InputStream in = Files.newInputStream(file)) {
+            img = ImageIO.read(in);
+            if (img == null) {
+                throw new IOException("Unrecognized thumbnail format");
+            }
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // damaged; make room for a good copy
+            errors.incrementAndGet();
+            misses.incrementAndGet();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e2) {
+                errors.incrementAndGet();
+            }
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file,
+                    FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted by another process
+        }
+        hits.incrementAndGet();
+
+        if (img.getType() == BufferedImage.TYPE_INT_RGB) {
+            return img;
+        }
+        // match the type returned by createThumbnailImage()
+        BufferedImage rgb = new BufferedImage(img.getWidth(),
+                img.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    void put(String quickhash, boolean srgb, int maxSize,
+            BufferedImage img) {
+        try {
+            write(quickhash, srgb, maxSize, img);
+        } catch (IOException | RuntimeException e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private void write(String quickhash, boolean srgb, int maxSize,
+            BufferedImage img) throws IOException {
+        Path file = path(quickhash, srgb, maxSize);
+        Path tmp = dir.resolve(file.getFileName() + "."
+                + ProcessHandle.current().pid() + "."
+                + Thread.currentThread().threadId() + ".tmp");
+        try {
+            if (!ImageIO.write(img, "png", tmp.toFile())) {
+                throw new IOException("Couldn't encode thumbnail");
+            }
+            long length = Files.size(tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            if (size.addAndGet(length) > capacity) {
+                trim();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // recount the directory and delete the least recently used
+    // thumbnails until it fits
+    private synchronized void trim() throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attrs = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+                "*" + SUFFIX)) {
+            for (Path file : stream) {
+                try {
+                    BasicFileAttributes a = Files.readAttributes(file,
+                            BasicFileAttributes.class);
+                    files.add(file);
+                    attrs.add(a);
+                    total += a.size();
+                } catch (NoSuchFileException e) {
+                    // deleted by another process
+                }
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> attrs.get(i).lastModifiedTime()));
+        for (int i : order) {
+            if (total <= capacity) {
+                break;
+            }
+            Files.deleteIfExists(files.get(i));
+            total -= attrs.get(i).size();
+        }
+        size.set(total);
+    }
+
+    private Path path(String quickhash, boolean srgb, int maxSize) {
+        return dir.resolve(quickhash + (srgb ? "-srgb-" : "-") + maxSize
+                + SUFFIX);
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    // approximate, since other processes may share the directory
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // failed reads and stores, which were treated as misses or skipped
+    public long getErrors() {
+        return errors.get();
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cache of decoded regions, shared between OpenSlide handles and keyed by
+// slide quickhash, level, and region coordinates.  Pixels are stored off
+// the Java heap in blocks of up to BLOCK_SIZE bytes, each holding entries
+// of a single size, so storing and evicting a tile doesn't create and
+// close an arena.  An evicted entry is reused for the entry that
+// displaced it if they're the same size, and otherwise freed immediately
+// or when the last in-progress read of it finishes.  A block is freed
+// once all its entries are, so native memory exceeds the capacity only
+// by the unused space in partly filled blocks.
+//
+// The cache is divided into independently locked stripes.  Each stripe is
+// a segmented LRU: new entries are admitted to a probationary segment and
+// promoted to the protected segment on their second hit, so a one-time
+// scan over a slide can't flush the tiles that are actually being reused.
+// A region must fit in one stripe, so regions larger than 1/16 of the
+// capacity are never cached; getRejected() counts them.
+public final class OpenSlideTileCache {
+    private static final int STRIPES = 16;
+
+    // fraction of each stripe reserved for the protected segment
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final long BLOCK_SIZE = 1 << 20;
+
+    // equal-sized entries sharing an arena
+    private static final class Block {
+        final Blocks owner;
+
+        final Arena arena;
+
+        final MemorySegment segment;
+
+        final long entrySize;
+
+        // indexes of unused entries; guarded by the owner
+        final int free[];
+
+        int freeCount;
+
+        Block(Blocks owner, long entrySize, int entries) {
+            this.owner = owner;
+            this.entrySize = entrySize;
+            arena = Arena.ofShared();
+            try {
+                segment = arena.allocate(entrySize * entries,
+                        Integer.BYTES);
+            } catch (RuntimeException | OutOfMemoryError ex) {
+                arena.close();
+                throw ex;
+            }
+            free = new int[entries];
+            for (int i = 0; i < entries; i++) {
+                free[i] = entries - 1 - i;
+            }
+            freeCount = entries;
+        }
+    }
+
+    // allocator for the entries of one stripe
+    private static final class Blocks {
+        final long blockSize;
+
+        // blocks with unused entries, by entry size
+        final HashMap<Long, ArrayDeque<Block>> partial = new HashMap<>();
+
+        Blocks(long blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        synchronized Entry allocate(long size) {
+            ArrayDeque<Block> blocks = partial.computeIfAbsent(size,
+                    k -> new ArrayDeque<>());
+            Block block = blocks.peekFirst();
+            if (block == null) {
+                block = new Block(this, size,
+                        (int) Math.max(1, blockSize / size));
+                blocks.addFirst(block);
+            }
+            int index = block.free[--block.freeCount];
+            if (block.freeCount == 0) {
+                blocks.removeFirst();
+                if (blocks.isEmpty()) {
+                    partial.remove(size);
+                }
+            }
+            return new Entry(block, index);
+        }
+
+        void free(Entry entry) {
+            Block block = entry.block;
+            synchronized (this) {
+                block.free[block.freeCount++] = entry.index;
+                if (block.freeCount == 1 && block.free.length > 1) {
+                    // was full
+                    partial.computeIfAbsent(block.entrySize,
+                            k -> new ArrayDeque<>()).addLast(block);
+                }
+                if (block.freeCount < block.free.length) {
+                    return;
+                }
+                if (block.free.length > 1) {
+                    ArrayDeque<Block> blocks = partial.get(block.entrySize);
+                    blocks.remove(block);
+                    if (blocks.isEmpty()) {
+                        partial.remove(block.entrySize);
+                    }
+                }
+            }
+            // close the arena outside the lock
+            block.arena.close();
+        }
+    }
+
+    private static final class Entry {
+        final Block block;
+
+        final int index;
+
+        final MemorySegment data;
+
+        // reads in progress; guarded by the stripe
+        int users;
+
+        // removed from the cache; freed when users reaches zero.  Guarded
+        // by the stripe.
+        boolean evicted;
+
+        Entry(Block block, int index) {
+            this.block = block;
+            this.index = index;
+            data = block.segment.asSlice(index * block.entrySize,
+                    block.entrySize);
+        }
+
+        long size() {
+            return data.byteSize();
+        }
+
+        void free() {
+            block.owner.free(this);
+        }
+    }
+
+    private static final class Stripe {
+        final long capacity;
+
+        final long protectedCapacity;
+
+        // access-ordered, so iteration starts with the least recently used
+        final LinkedHashMap<TileKey, Entry> probation =
+                new LinkedHashMap<>(16, 0.75f, true);
+
+        final LinkedHashMap<TileKey, Entry> protect =
+                new LinkedHashMap<>(16, 0.75f, true);
+
+        long size;
+
+        long protectedSize;
+
+        long hits;
+
+        long misses;
+
+        long evictions;
+
+        long rejected;
+
+        final Blocks blocks;
+
+        Stripe(long capacity) {
+            this.capacity = capacity;
+            blocks = new Blocks(Math.min(BLOCK_SIZE, capacity));
+            protectedCapacity = (long) (capacity * PROTECTED_RATIO);
+        }
+
+        // the caller must release() the returned entry
+        synchronized Entry get(TileKey key) {
+            Entry entry = protect.get(key);
+            if (entry == null) {
+                entry = probation.remove(key);
+                if (entry == null) {
+                    misses++;
+                    return null;
+                }
+                // promote, demoting from the protected segment if full
+                protect.put(key, entry);
+                protectedSize += entry.size();
+                Iterator<Map.Entry<TileKey, Entry>> it =
+                        protect.entrySet().iterator();
+                while (protectedSize > protectedCapacity) {
+                    Map.Entry<TileKey, Entry> e = it.next();
+                    it.remove();
+                    protectedSize -= e.getValue().size();
+                    probation.put(e.getKey(), e.getValue());
+                }
+            }
+            hits++;
+            entry.users++;
+            return entry;
+        }
+
+        // returns whether the entry can be freed now
+        synchronized boolean release(Entry entry) {
+            return --entry.users == 0 && entry.evicted;
+        }
+
+        // evict until there's room for bytes more, adding entries that
+        // can be freed now to freed.  Returns false if the key is already
+        // cached.
+        synchronized boolean reserve(TileKey key, long bytes,
+                List<Entry> freed) {
+            if (protect.containsKey(key) || probation.containsKey(key)) {
+                return false;
+            }
+            evict(probation, capacity - bytes, freed);
+            evict(protect, capacity - bytes, freed);
+            return true;
+        }
+
+        // returns false if the key is already cached; otherwise adds
+        // entries that can be freed now to freed
+        synchronized boolean put(TileKey key, Entry entry,
+                List<Entry> freed) {
+            if (protect.containsKey(key) || probation.containsKey(key)) {
+                return false;
+            }
+            probation.put(key, entry);
+            size += entry.size();
+            evict(probation, capacity, freed);
+            evict(protect, capacity, freed);
+            return true;
+        }
+
+        private void evict(LinkedHashMap<TileKey, Entry> segment,
+                long limit, List<Entry> freed) {
+            Iterator<Entry> it = segment.values().iterator();
+            while (size > limit && it.hasNext()) {
+                Entry entry = it.next();
+                it.remove();
+                size -= entry.size();
+                if (segment == protect) {
+                    protectedSize -= entry.size();
+                }
+                evictions++;
+                retire(entry, freed);
+            }
+        }
+
+        synchronized void clear(List<Entry> freed) {
+            for (Entry entry : probation.values()) {
+                retire(entry, freed);
+            }
+            for (Entry entry : protect.values()) {
+                retire(entry, freed);
+            }
+            probation.clear();
+            protect.clear();
+            size = 0;
+            protectedSize = 0;
+        }
+
+        private void retire(Entry entry, List<Entry> freed) {
+            entry.evicted = true;
+            if (entry.users == 0) {
+                freed.add(entry);
+            }
+        }
+    }
+
+    private final long capacity;
+
+    private final Stripe stripes[] = new Stripe[STRIPES];
+
+    public OpenSlideTileCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "capacity must be nonnegative");
+        }
+        this.capacity = capacity;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity / STRIPES);
+        }
+    }
+
+    private Stripe stripe(TileKey key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // copy cached pixels into dest; returns false on a miss
+    boolean get(TileKey key, MemorySegment dest) {
+        Stripe stripe = stripe(key);
+        Entry entry = stripe.get(key);
+        if (entry == null) {
+            return false;
+        }
+        // eviction defers freeing the entry until we release it, so copy
+        // outside the lock
+        try {
+            MemorySegment.copy(entry.data, 0, dest, 0, entry.size());
+        } finally {
+            if (stripe.release(entry)) {
+                entry.free();
+            }
+        }
+        return true;
+    }
+
+    // store a copy of the first key.getByteSize() bytes of src
+    void put(TileKey key, MemorySegment src) {
+        long size = key.getByteSize();
+        Stripe stripe = stripe(key);
+        if (size == 0) {
+            return;
+        }
+        if (size > stripe.capacity) {
+            synchronized (stripe) {
+                stripe.rejected++;
+            }
+            return;
+        }
+        // make room first, so that an evicted entry of the same size can
+        // be reused rather than freed and reallocated
+        List<Entry> freed = new ArrayList<>();
+        if (!stripe.reserve(key, size, freed)) {
+            return;
+        }
+        Entry entry = null;
+        for (Iterator<Entry> it = freed.iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (e.size() == size) {
+                it.remove();
+                e.evicted = false;
+                entry = e;
+                break;
+            }
+        }
+        free(freed);
+        freed.clear();
+        if (entry == null) {
+            entry = stripe.blocks.allocate(size);
+        }
+
+        try {
+            MemorySegment.copy(src, 0, entry.data, 0, size);
+            if (!stripe.put(key, entry, freed)) {
+                freed.add(entry);
+            }
+        } catch (RuntimeException e) {
+            entry.free();
+            throw e;
+        }
+        free(freed);
+    }
+
+    private static void free(List<Entry> entries) {
+        for (Entry entry : entries) {
+            entry.free();
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getSize() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        long hits = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long getMisses() {
+        long misses = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                misses += stripe.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long getEvictions() {
+        long evictions = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evictions += stripe.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    // regions too large for a stripe, which weren't cached
+    public long getRejected() {
+        long rejected = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                rejected += stripe.rejected;
+            }
+        }
+        return rejected;
+    }
+
+    public void clear() {
+        List<Entry> freed = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.clear(freed);
+        }
+        free(freed);
+    }
+}
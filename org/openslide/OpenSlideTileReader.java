@@ -0,0 +1,252 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reads batches of tiles concurrently and hands back the results in
+// completion order.  OpenSlide allows concurrent reads on a single handle,
+// so the tiles may all come from the same slide.
+public final class OpenSlideTileReader implements AutoCloseable {
+    public static final class Result {
+        private final Tile tile;
+
+        private final BufferedImage image;
+
+        private final Throwable error;
+
+        private Result(Tile tile, BufferedImage image, Throwable error) {
+            this.tile = tile;
+            this.image = image;
+            this.error = error;
+        }
+
+        public Tile getTile() {
+            return tile;
+        }
+
+        // throws the exception or error raised while reading the tile, if
+        // any
+        public BufferedImage getImage() throws IOException {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw (Error) error;
+            }
+            return image;
+        }
+    }
+
+    public final class Batch implements AutoCloseable {
+        private final BlockingQueue<Result> completed =
+                new LinkedBlockingQueue<>();
+
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        private int remaining;
+
+        private Batch(Collection<Tile> tiles) {
+            remaining = tiles.size();
+            for (Tile tile : tiles) {
+                futures.add(executor.submit(() -> completed.add(read(tile))));
+            }
+        }
+
+        // number of results not yet returned by take()
+        public int getRemaining() {
+            return remaining;
+        }
+
+        // wait for the next result; returns null once every result has
+        // been taken
+        public Result take() throws InterruptedException {
+            if (remaining == 0) {
+                return null;
+            }
+            Result result = completed.take();
+            remaining--;
+            return result;
+        }
+
+        // cancel reads that haven't started.  Results for cancelled reads
+        // are never delivered, so take() should not be called afterward.
+        @Override
+        public void close() {
+            for (Future<?> f : futures) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final Object statsLock = new Object();
+
+    private long tilesRead;
+
+    private long pixelsRead;
+
+    private int active;
+
+    private long activeSince;
+
+    private long activeNanos;
+
+    private OpenSlideTileReader(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        permits = new Semaphore(parallelism);
+    }
+
+    // decode on a fixed pool of platform threads
+    public static OpenSlideTileReader withPlatformThreads(int parallelism) {
+        checkParallelism(parallelism);
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r,
+                    "openslide-reader-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+        return new OpenSlideTileReader(
+                Executors.newFixedThreadPool(parallelism, factory),
+                parallelism);
+    }
+
+    // decode on a virtual thread per tile.  A virtual thread is pinned to
+    // its carrier while inside OpenSlide, so at most parallelism tiles
+    // are decoded at once.
+    public static OpenSlideTileReader withVirtualThreads(int parallelism) {
+        checkParallelism(parallelism);
+        ThreadFactory factory = Thread.ofVirtual()
+                .name("openslide-reader-", 0).factory();
+        return new OpenSlideTileReader(
+                Executors.newThreadPerTaskExecutor(factory), parallelism);
+    }
+
+    private static void checkParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "parallelism must be positive");
+        }
+    }
+
+    public Batch read(Collection<Tile> tiles) {
+        return new Batch(tiles);
+    }
+
+    public long getTilesRead() {
+        synchronized (statsLock) {
+            return tilesRead;
+        }
+    }
+
+    public long getPixelsRead() {
+        synchronized (statsLock) {
+            return pixelsRead;
+        }
+    }
+
+    // throughput over the time during which at least one read was running
+    public double getTilesPerSecond() {
+        synchronized (statsLock) {
+            return perSecond(tilesRead);
+        }
+    }
+
+    public double getPixelsPerSecond() {
+        synchronized (statsLock) {
+            return perSecond(pixelsRead);
+        }
+    }
+
+    private double perSecond(long count) {
+        long nanos = activeNanos;
+        if (active > 0) {
+            nanos += System.nanoTime() - activeSince;
+        }
+        if (nanos == 0) {
+            return 0;
+        }
+        return count * 1e9 / nanos;
+    }
+
+    private Result read(Tile tile) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            return new Result(tile, null, new InterruptedIOException());
+        }
+        try {
+            started();
+            // every task must post a result, or take() would wait forever
+            try {
+                return new Result(tile, tile.readImage(), null);
+            } catch (Throwable t) {
+                return new Result(tile, null, t);
+            } finally {
+                finished((long) tile.getWidth() * tile.getHeight());
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void started() {
+        synchronized (statsLock) {
+            if (active++ == 0) {
+                activeSince = System.nanoTime();
+            }
+        }
+    }
+
+    private void finished(long pixels) {
+        synchronized (statsLock) {
+            tilesRead++;
+            pixelsRead += pixels;
+            if (--active == 0) {
+                activeNanos += System.nanoTime() - activeSince;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
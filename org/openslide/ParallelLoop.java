@@ -0,0 +1,83 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runs the iterations of a loop on an executor, with at most a fixed
+// number queued or running at once so callers can bound the memory the
+// iterations use.  The first failure stops further iterations from
+// starting and is rethrown on the calling thread once the running ones
+// finish.
+final class ParallelLoop {
+    interface Body {
+        void run(long i) throws IOException;
+    }
+
+    private ParallelLoop() {
+    }
+
+    // run body for i in [0, count)
+    static void run(Executor executor, int slots, long count, Body body)
+            throws IOException {
+        Semaphore permits = new Semaphore(slots);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        try {
+            for (long i = 0; i < count && error.get() == null; i++) {
+                long iteration = i;
+                permits.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            body.run(iteration);
+                        } catch (Throwable e) {
+                            // including Errors, which would otherwise
+                            // leave the iteration silently undone
+                            error.compareAndSet(null, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+            // wait for outstanding iterations
+            permits.acquire(slots);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        Throwable e = error.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e != null) {
+            throw (Error) e;
+        }
+    }
+}
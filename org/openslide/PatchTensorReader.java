@@ -0,0 +1,238 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reads batches of equally sized patches from one slide level into a
+// single tensor in native memory, ready to hand to an inference runtime.
+// Each patch is composited onto the slide's background color and, for
+// FLOAT32 output, scaled to [0, 1] and normalized with a per-channel mean
+// and standard deviation.  Compositing premultiplied pixels onto an opaque
+// background needs no separate un-premultiply step, so every output value
+// comes from two table lookups.  Patches are read in parallel, and each
+// is converted straight from a pooled scratch buffer into the tensor.
+public final class PatchTensorReader implements AutoCloseable {
+    public enum Layout {
+        // patch, channel, row, column
+        NCHW,
+        // patch, row, column, channel
+        NHWC
+    }
+
+    public enum DataType {
+        FLOAT32(Float.BYTES),
+        UINT8(Byte.BYTES);
+
+        private final int size;
+
+        DataType(int size) {
+            this.size = size;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private static final int CHANNELS = 3;
+
+    private final OpenSlide os;
+
+    private final int patchWidth;
+
+    private final int patchHeight;
+
+    private final Layout layout;
+
+    private final DataType type;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    // per channel, the background's contribution for each alpha value
+    private final int background[][] = new int[CHANNELS][256];
+
+    // per channel, the normalized value of each composited sample
+    private final float normalized[][] = new float[CHANNELS][256];
+
+    // mean and std are per RGB channel, in [0, 1] units, and only apply
+    // to FLOAT32
+    public PatchTensorReader(OpenSlide os, int patchWidth, int patchHeight,
+            Layout layout, DataType type, float mean[], float std[],
+            int parallelism) {
+        if (patchWidth <= 0 || patchHeight <= 0) {
+            throw new IllegalArgumentException(
+                    "patch dimensions must be positive");
+        }
+        if (mean.length != CHANNELS || std.length != CHANNELS) {
+            throw new IllegalArgumentException(
+                    "mean and std must have " + CHANNELS + " elements");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "parallelism must be positive");
+        }
+        this.os = os;
+        this.patchWidth = patchWidth;
+        this.patchHeight = patchHeight;
+        this.layout = layout;
+        this.type = type;
+        this.parallelism = parallelism;
+
+        String bg = os.getProperty(OpenSlide.PROPERTY_NAME_BACKGROUND_COLOR);
+        int rgb = bg != null ? Integer.parseInt(bg, 16) : 0xffffff;
+        for (int c = 0; c < CHANNELS; c++) {
+            int value = (rgb >> (16 - 8 * c)) & 0xff;
+            for (int a = 0; a < 256; a++) {
+                background[c][a] = ((255 - a) * value + 127) / 255;
+            }
+            for (int v = 0; v < 256; v++) {
+                normalized[c][v] = (v / 255f - mean[c]) / std[c];
+            }
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r,
+                    "openslide-patch-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // size of a tensor holding count patches
+    public long getTensorBytes(int count) {
+        return (long) count * CHANNELS * patchWidth * patchHeight
+                * type.getSize();
+    }
+
+    // allocate a tensor from arena and read into it
+    public MemorySegment read(long locations[], int level, Arena arena)
+            throws IOException {
+        MemorySegment dest = arena.allocate(
+                getTensorBytes(locations.length / 2), 64);
+        read(locations, level, dest);
+        return dest;
+    }
+
+    // locations holds the level 0 x and y coordinates of the top left
+    // corner of each patch, interleaved.  Patches are converted into dest
+    // from worker threads; if they can't access it, as with a confined
+    // arena, they convert into a shared staging tensor which is then
+    // copied to dest.
+    public void read(long locations[], int level, MemorySegment dest)
+            throws IOException {
+        if (locations.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                    "locations must have an even number of elements");
+        }
+        if (level < 0 || level >= os.getLevelCount()) {
+            throw new IllegalArgumentException("Invalid level " + level);
+        }
+        int count = locations.length / 2;
+        if (dest.byteSize() < getTensorBytes(count)) {
+            throw new IndexOutOfBoundsException("Size of destination ("
+                    + dest.byteSize() + " bytes) is less than "
+                    + getTensorBytes(count));
+        }
+        if (dest.address() % type.getSize() != 0) {
+            throw new IllegalArgumentException(
+                    "Destination must be aligned to " + type.getSize()
+                    + " bytes");
+        }
+
+        if (!NativeBufferPool.isShared(dest)) {
+            long bytes = getTensorBytes(count);
+            try (Arena arena = Arena.ofShared()) {
+                MemorySegment staging = arena.allocate(bytes, 64);
+                readPatches(locations, level, count, staging);
+                MemorySegment.copy(staging, 0, dest, 0, bytes);
+            }
+            return;
+        }
+        readPatches(locations, level, count, dest);
+    }
+
+    private void readPatches(long locations[], int level, int count,
+            MemorySegment dest) throws IOException {
+        ParallelLoop.run(executor, 2 * parallelism, count, i -> {
+            int patch = (int) i;
+            readPatch(locations[2 * patch], locations[2 * patch + 1], level,
+                    patch, dest);
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void readPatch(long x, long y, int level, int patch,
+            MemorySegment dest) throws IOException {
+        long pixels = (long) patchWidth * patchHeight;
+        long bytes = pixels * Integer.BYTES;
+        try (NativeBufferPool.Scratch scratch =
+                NativeBufferPool.acquire(bytes)) {
+            MemorySegment src = scratch.allocate(bytes, Integer.BYTES);
+            os.readRegion(src, x, y, level, patchWidth, patchHeight);
+
+            // element index of this patch, and the distance between
+            // channels and between pixels
+            long base = patch * pixels * CHANNELS;
+            long channelStride = layout == Layout.NCHW ? pixels : 1;
+            long pixelStride = layout == Layout.NCHW ? 1 : CHANNELS;
+            int bgR[] = background[0];
+            int bgG[] = background[1];
+            int bgB[] = background[2];
+            for (long i = 0; i < pixels; i++) {
+                int p = src.getAtIndex(ValueLayout.JAVA_INT, i);
+                int a = p >>> 24;
+                int r = Math.min(255, ((p >> 16) & 0xff) + bgR[a]);
+                int g = Math.min(255, ((p >> 8) & 0xff) + bgG[a]);
+                int b = Math.min(255, (p & 0xff) + bgB[a]);
+                long off = base + i * pixelStride;
+                if (type == DataType.FLOAT32) {
+                    dest.setAtIndex(ValueLayout.JAVA_FLOAT, off,
+                            normalized[0][r]);
+                    dest.setAtIndex(ValueLayout.JAVA_FLOAT,
+                            off + channelStride, normalized[1][g]);
+                    dest.setAtIndex(ValueLayout.JAVA_FLOAT,
+                            off + 2 * channelStride, normalized[2][b]);
+                } else {
+                    dest.set(ValueLayout.JAVA_BYTE, off, (byte) r);
+                    dest.set(ValueLayout.JAVA_BYTE, off + channelStride,
+                            (byte) g);
+                    dest.set(ValueLayout.JAVA_BYTE, off + 2 * channelStride,
+                            (byte) b);
+                }
+            }
+        }
+    }
+}
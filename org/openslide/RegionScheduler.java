@@ -0,0 +1,318 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs readRegion calls asynchronously, highest priority first and in
+// submission order within a priority.  Requests wait in a priority queue
+// until one of at most parallelism workers is free; cancelling a request
+// that hasn't started removes it from the queue.  Workers run on an
+// executor, which can be shared with other work.
+public final class RegionScheduler implements AutoCloseable {
+    // suggested priorities
+    public static final int PRIORITY_VISIBLE = 10;
+
+    public static final int PRIORITY_PREFETCH = 0;
+
+    // the work done for a request
+    interface Read {
+        BufferedImage read() throws IOException;
+    }
+
+    private final class Request extends CompletableFuture<BufferedImage>
+            implements Comparable<Request> {
+        final Read read;
+
+        final int priority;
+
+        final long sequence;
+
+        final long submitted = System.nanoTime();
+
+        Request(Read read, int priority, long sequence) {
+            this.read = read;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && queue.remove(this)) {
+                RegionScheduler.this.cancelled.incrementAndGet();
+            }
+            return cancelled;
+        }
+
+        // CompletableFuture's default would create another Request
+        @Override
+        public <U> CompletableFuture<U> newIncompleteFuture() {
+            return new CompletableFuture<U>();
+        }
+    }
+
+    private static volatile RegionScheduler defaultScheduler;
+
+    private final PriorityBlockingQueue<Request> queue =
+            new PriorityBlockingQueue<>();
+
+    private final Executor executor;
+
+    // null if the executor was provided by the caller
+    private final ExecutorService ownExecutor;
+
+    private final int parallelism;
+
+    private final AtomicInteger workers = new AtomicInteger();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile boolean closed;
+
+    // run on a private pool of daemon threads
+    public RegionScheduler(int parallelism) {
+        checkParallelism(parallelism);
+        AtomicInteger count = new AtomicInteger();
+        ownExecutor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r,
+                    "openslide-scheduler-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        executor = ownExecutor;
+        this.parallelism = parallelism;
+    }
+
+    // run on the given executor, using at most parallelism of its threads
+    public RegionScheduler(Executor executor, int parallelism) {
+        checkParallelism(parallelism);
+        this.executor = executor;
+        ownExecutor = null;
+        this.parallelism = parallelism;
+    }
+
+    // shared scheduler used by OpenSlide.readRegionAsync()
+    static RegionScheduler getDefault() {
+        RegionScheduler scheduler = defaultScheduler;
+        if (scheduler == null) {
+            synchronized (RegionScheduler.class) {
+                scheduler = defaultScheduler;
+                if (scheduler == null) {
+                    scheduler = defaultScheduler = new RegionScheduler(
+                            Runtime.getRuntime().availableProcessors());
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private static void checkParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "parallelism must be positive");
+        }
+    }
+
+    // higher priorities run first
+    public CompletableFuture<BufferedImage> submit(OpenSlide os, long x,
+            long y, int level, int w, int h, int priority) {
+        return submit(() -> os.readRegion(x, y, level, w, h), priority);
+    }
+
+    CompletableFuture<BufferedImage> submit(Read read, int priority) {
+        if (closed) {
+            throw new IllegalStateException("Scheduler is closed");
+        }
+        Request request = new Request(read, priority,
+                sequence.getAndIncrement());
+        queue.add(request);
+        try {
+            startWorker();
+        } catch (RuntimeException e) {
+            // the executor refused, probably because close() ran after the
+            // check above; don't leave the request queued with no worker
+            withdraw(request);
+            throw e;
+        }
+        // close() may have drained the queue before we added to it
+        if (closed) {
+            withdraw(request);
+        }
+        return request;
+    }
+
+    private void withdraw(Request request) {
+        if (queue.remove(request) && request.cancel(false)) {
+            cancelled.incrementAndGet();
+        }
+    }
+
+    private void startWorker() {
+        while (true) {
+            int n = workers.get();
+            if (n >= parallelism) {
+                return;
+            }
+            if (workers.compareAndSet(n, n + 1)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    workers.decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        boolean holding = true;
+        try {
+            while (true) {
+                Request request = queue.poll();
+                if (request == null) {
+                    workers.decrementAndGet();
+                    holding = false;
+                    // recheck, in case a request arrived after the poll
+                    if (queue.isEmpty() || !reclaimWorker()) {
+                        return;
+                    }
+                    holding = true;
+                    continue;
+                }
+                run(request);
+            }
+        } finally {
+            // if something escaped, give up the slot and hand the rest of
+            // the queue to a new worker
+            if (holding) {
+                workers.decrementAndGet();
+                if (!queue.isEmpty() && !closed) {
+                    try {
+                        startWorker();
+                    } catch (RuntimeException e) {
+                        // executor is shutting down
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean reclaimWorker() {
+        while (true) {
+            int n = workers.get();
+            if (n >= parallelism) {
+                return false;
+            }
+            if (workers.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void run(Request request) {
+        if (request.isDone()) {
+            return;
+        }
+        long wait = System.nanoTime() - request.submitted;
+        waitNanos.addAndGet(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+        try {
+            request.complete(request.read.read());
+        } catch (Exception e) {
+            request.completeExceptionally(e);
+        } catch (Error e) {
+            // fail the request, then let the Error reach the executor
+            request.completeExceptionally(e);
+            throw e;
+        } finally {
+            completed.incrementAndGet();
+        }
+    }
+
+    // requests waiting to start
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // requests that ran, successfully or not
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    // requests cancelled before they started
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    // total and maximum time from submission until a request started
+    public long getTotalWaitNanos() {
+        return waitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    // cancel queued requests, and shut down the private pool, if any
+    @Override
+    public void close() {
+        closed = true;
+        List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Request request : pending) {
+            if (request.cancel(false)) {
+                cancelled.incrementAndGet();
+            }
+        }
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+}
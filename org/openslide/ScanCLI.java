@@ -0,0 +1,53 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class ScanCLI {
+    public static void main(String args[]) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.out.printf("usage: ScanCLI directory index-file "
+                    + "[parallelism]\n");
+            return;
+        }
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (args.length == 3) {
+            parallelism = Integer.parseInt(args[2]);
+        }
+
+        SlideScanner scanner = new SlideScanner(parallelism,
+                (file, e) -> System.err.printf("%s: %s\n", file,
+                e.getMessage()));
+        long start = System.nanoTime();
+        scanner.scan(Path.of(args[0]), Path.of(args[1]));
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("examined %d files in %.1f s: %d indexed, "
+                + "%d unchanged, %d failed, %d unreadable\n",
+                scanner.getExamined(), secs, scanner.getIndexed(),
+                scanner.getReused(), scanner.getFailed(),
+                scanner.getSkipped());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Coalesces identical concurrent region reads.  The first reader of a
+// region decodes it; readers arriving before that decode finishes wait
+// for it and copy its result.  Joining and finishing are both atomic map
+// operations, so a reader either joins the decode in progress or starts a
+// new one after it has finished.  The pixels are only copied aside when
+// someone is waiting, so a unique read costs two map updates.
+final class SingleFlight {
+    interface Decoder {
+        void decode() throws IOException;
+    }
+
+    private static final class Flight {
+        // guarded by the map
+        int waiters;
+
+        // guarded by this
+        boolean done;
+
+        MemorySegment result;
+
+        Throwable error;
+    }
+
+    private final ConcurrentHashMap<TileKey, Flight> flights =
+            new ConcurrentHashMap<>();
+
+    // decode into dest, which is the size of the region, or copy the
+    // result of an identical decode already in progress.  Returns true if
+    // the pixels were decoded by this call.
+    boolean read(TileKey key, MemorySegment dest, Decoder decoder)
+            throws IOException {
+        Flight mine = new Flight();
+        Flight flight = flights.compute(key, (k, cur) -> {
+            if (cur == null) {
+                return mine;
+            }
+            cur.waiters++;
+            return cur;
+        });
+        if (flight != mine) {
+            join(flight, dest);
+            return false;
+        }
+
+        Throwable error = null;
+        try {
+            decoder.decode();
+        } catch (Throwable t) {
+            error = t;
+            throw t;
+        } finally {
+            finish(key, mine, dest, error);
+        }
+        return true;
+    }
+
+    // end the flight and hand its result to the waiters.  This must run
+    // however the decode ends, or waiters and later readers of the region
+    // would block forever.
+    private void finish(TileKey key, Flight mine, MemorySegment dest,
+            Throwable error) {
+        // no one can join after this
+        flights.remove(key);
+        if (mine.waiters == 0) {
+            return;
+        }
+        MemorySegment result = null;
+        if (error == null) {
+            try {
+                result = Arena.ofAuto().allocate(key.getByteSize(),
+                        Integer.BYTES);
+                MemorySegment.copy(dest, 0, result, 0, key.getByteSize());
+            } catch (RuntimeException | Error e) {
+                // fail the waiters rather than the decode
+                result = null;
+                error = e;
+            }
+        }
+        synchronized (mine) {
+            mine.result = result;
+            mine.error = error;
+            mine.done = true;
+            mine.notifyAll();
+        }
+    }
+
+    private static void join(Flight flight, MemorySegment dest)
+            throws IOException {
+        boolean interrupted = false;
+        MemorySegment result;
+        Throwable error;
+        synchronized (flight) {
+            while (!flight.done) {
+                try {
+                    flight.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            result = flight.result;
+            error = flight.error;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        rethrow(error);
+        MemorySegment.copy(result, 0, dest, 0, result.byteSize());
+    }
+
+    // throw the leader's failure, if any.  An IOException is wrapped in a
+    // new one so the stack trace includes this thread.
+    private static void rethrow(Throwable t) throws IOException {
+        if (t instanceof IOException) {
+            throw new IOException(t.getMessage(), t);
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t != null) {
+            throw (Error) t;
+        }
+    }
+}
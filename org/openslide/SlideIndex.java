@@ -0,0 +1,305 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+// On-disk index of slide metadata.  The format is UTF-8 text: a header
+// line followed by one tab-separated line per slide.  Empty fields are
+// missing values.  Tabs, newlines, and backslashes in strings are
+// backslash-escaped.
+public final class SlideIndex {
+    static final String HEADER = "# openslide-index 1";
+
+    public static final class Entry {
+        private final String path;
+
+        private final long modified;
+
+        private final long size;
+
+        private final String vendor;
+
+        private final String quickhash1;
+
+        private final String mppX;
+
+        private final String mppY;
+
+        private final String boundsX;
+
+        private final String boundsY;
+
+        private final String boundsWidth;
+
+        private final String boundsHeight;
+
+        private final long levelWidths[];
+
+        private final long levelHeights[];
+
+        private final double levelDownsamples[];
+
+        private Entry(String fields[]) {
+            path = fields[0];
+            modified = Long.parseLong(fields[1]);
+            size = Long.parseLong(fields[2]);
+            vendor = fields[3];
+            quickhash1 = fields[4];
+            mppX = fields[5];
+            mppY = fields[6];
+            boundsX = fields[7];
+            boundsY = fields[8];
+            boundsWidth = fields[9];
+            boundsHeight = fields[10];
+            String levels[] = fields[11] == null ? new String[0] :
+                    fields[11].split(",");
+            levelWidths = new long[levels.length];
+            levelHeights = new long[levels.length];
+            levelDownsamples = new double[levels.length];
+            for (int i = 0; i < levels.length; i++) {
+                // WxH:downsample
+                int x = levels[i].indexOf('x');
+                int colon = levels[i].indexOf(':');
+                levelWidths[i] = Long.parseLong(levels[i].substring(0, x));
+                levelHeights[i] = Long.parseLong(
+                        levels[i].substring(x + 1, colon));
+                levelDownsamples[i] = Double.parseDouble(
+                        levels[i].substring(colon + 1));
+            }
+        }
+
+        Entry(Path path, long modified, long size, String vendor,
+                OpenSlide os) {
+            this.path = path.toString();
+            this.modified = modified;
+            this.size = size;
+            this.vendor = vendor;
+            quickhash1 = os.getProperty(OpenSlide.PROPERTY_NAME_QUICKHASH1);
+            mppX = os.getProperty(OpenSlide.PROPERTY_NAME_MPP_X);
+            mppY = os.getProperty(OpenSlide.PROPERTY_NAME_MPP_Y);
+            boundsX = os.getProperty(OpenSlide.PROPERTY_NAME_BOUNDS_X);
+            boundsY = os.getProperty(OpenSlide.PROPERTY_NAME_BOUNDS_Y);
+            boundsWidth = os.getProperty(
+                    OpenSlide.PROPERTY_NAME_BOUNDS_WIDTH);
+            boundsHeight = os.getProperty(
+                    OpenSlide.PROPERTY_NAME_BOUNDS_HEIGHT);
+            int count = os.getLevelCount();
+            levelWidths = new long[count];
+            levelHeights = new long[count];
+            levelDownsamples = new double[count];
+            for (int i = 0; i < count; i++) {
+                levelWidths[i] = os.getLevelWidth(i);
+                levelHeights[i] = os.getLevelHeight(i);
+                levelDownsamples[i] = os.getLevelDownsample(i);
+            }
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        // milliseconds since the epoch
+        public long getModified() {
+            return modified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getVendor() {
+            return vendor;
+        }
+
+        public String getQuickhash1() {
+            return quickhash1;
+        }
+
+        public String getMppX() {
+            return mppX;
+        }
+
+        public String getMppY() {
+            return mppY;
+        }
+
+        public String getBoundsX() {
+            return boundsX;
+        }
+
+        public String getBoundsY() {
+            return boundsY;
+        }
+
+        public String getBoundsWidth() {
+            return boundsWidth;
+        }
+
+        public String getBoundsHeight() {
+            return boundsHeight;
+        }
+
+        public int getLevelCount() {
+            return levelWidths.length;
+        }
+
+        public long getLevelWidth(int level) {
+            return levelWidths[level];
+        }
+
+        public long getLevelHeight(int level) {
+            return levelHeights[level];
+        }
+
+        public double getLevelDownsample(int level) {
+            return levelDownsamples[level];
+        }
+
+        String toLine() {
+            StringBuilder levels = new StringBuilder();
+            for (int i = 0; i < levelWidths.length; i++) {
+                if (i > 0) {
+                    levels.append(',');
+                }
+                levels.append(levelWidths[i]).append('x')
+                        .append(levelHeights[i]).append(':')
+                        .append(levelDownsamples[i]);
+            }
+            String fields[] = {path, Long.toString(modified),
+                    Long.toString(size), vendor, quickhash1, mppX, mppY,
+                    boundsX, boundsY, boundsWidth, boundsHeight,
+                    levels.toString()};
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    sb.append('\t');
+                }
+                if (fields[i] != null) {
+                    escape(sb, fields[i]);
+                }
+            }
+            return sb.toString();
+        }
+
+        static Entry parse(String line) throws IOException {
+            String raw[] = line.split("\t", -1);
+            if (raw.length != 12) {
+                throw new IOException("Malformed index line: " + line);
+            }
+            String fields[] = new String[raw.length];
+            try {
+                for (int i = 0; i < raw.length; i++) {
+                    fields[i] = raw[i].isEmpty() ? null : unescape(raw[i]);
+                }
+                return new Entry(fields);
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed index line: " + line, e);
+            }
+        }
+    }
+
+    private SlideIndex() {
+    }
+
+    // returns an empty map if the index doesn't exist
+    public static Map<String, Entry> read(Path file) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IOException(file + ": Not a slide index");
+            }
+            while ((line = in.readLine()) != null) {
+                Entry entry = Entry.parse(line);
+                entries.put(entry.getPath(), entry);
+            }
+        } catch (NoSuchFileException e) {
+            // nothing indexed yet
+        }
+        return entries;
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '\t':
+                sb.append("\\t");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') == -1) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                if (++i == s.length()) {
+                    throw new IllegalArgumentException("Trailing backslash");
+                }
+                c = s.charAt(i);
+                switch (c) {
+                case 't':
+                    c = '\t';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case '\\':
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown escape \\"
+                            + c);
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Walks a directory tree and writes a SlideIndex of the slides in it.
+// Files are examined in parallel, and entries are streamed to a temporary
+// file which replaces the index once the scan completes.  Entries from
+// the previous index are reused for files whose size and modification
+// time haven't changed.  Files and directories that can't be read are
+// skipped, reported to the listener, and left out of the index.
+public final class SlideScanner {
+    public interface Listener {
+        // called for slides that can't be opened, and for files and
+        // directories that can't be read
+        void failed(Path file, Exception e);
+    }
+
+    private final int parallelism;
+
+    private final Listener listener;
+
+    private final AtomicLong examined = new AtomicLong();
+
+    private final AtomicLong indexed = new AtomicLong();
+
+    private final AtomicLong reused = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    public SlideScanner(int parallelism, Listener listener) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(
+                    "parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        this.listener = listener;
+    }
+
+    public void scan(Path root, Path indexFile) throws IOException {
+        Map<String, SlideIndex.Entry> previous = SlideIndex.read(indexFile);
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName()
+                + ".tmp");
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                r -> {
+                    Thread t = new Thread(r,
+                            "openslide-scanner-" + count.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        // bound the number of queued files
+        Semaphore permits = new Semaphore(2 * parallelism);
+        AtomicReference<IOException> writeError = new AtomicReference<>();
+        boolean moved = false;
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp,
+                    StandardCharsets.UTF_8)) {
+                out.write(SlideIndex.HEADER);
+                out.newLine();
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file,
+                            BasicFileAttributes attrs) throws IOException {
+                        if (writeError.get() != null) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (!attrs.isRegularFile()) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        try {
+                            permits.acquire();
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                        executor.execute(() -> {
+                            try {
+                                examine(file.toAbsolutePath().normalize(),
+                                        attrs, previous, out);
+                            } catch (UncheckedIOException e) {
+                                writeError.compareAndSet(null,
+                                        e.getCause());
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file,
+                            IOException e) throws IOException {
+                        if (file.equals(root)) {
+                            throw e;
+                        }
+                        skip(file, e);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir,
+                            IOException e) {
+                        // listing failed partway through
+                        if (e != null) {
+                            skip(dir, e);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE,
+                        TimeUnit.NANOSECONDS);
+                if (writeError.get() != null) {
+                    throw writeError.get();
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } finally {
+                executor.shutdownNow();
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    private void skip(Path path, IOException e) {
+        skipped.incrementAndGet();
+        if (listener != null) {
+            listener.failed(path, e);
+        }
+    }
+
+    private void examine(Path file, BasicFileAttributes attrs,
+            Map<String, SlideIndex.Entry> previous, BufferedWriter out) {
+        examined.incrementAndGet();
+        long modified = attrs.lastModifiedTime().toMillis();
+        long size = attrs.size();
+        SlideIndex.Entry entry = previous.get(file.toString());
+        if (entry != null && entry.getModified() == modified
+                && entry.getSize() == size) {
+            reused.incrementAndGet();
+        } else {
+            String vendor = OpenSlide.detectVendor(file.toFile());
+            if (vendor == null) {
+                return;
+            }
+            try (OpenSlide os = new OpenSlide(file.toFile(),
+                    OpenSlide.OpenOption.LAZY)) {
+                entry = new SlideIndex.Entry(file, modified, size, vendor,
+                        os);
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                if (listener != null) {
+                    listener.failed(file, e);
+                }
+                return;
+            }
+            indexed.incrementAndGet();
+        }
+        String line = entry.toLine();
+        synchronized (out) {
+            try {
+                out.write(line);
+                out.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public long getExamined() {
+        return examined.get();
+    }
+
+    // slides opened and added to the index
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    // unchanged slides copied from the previous index
+    public long getReused() {
+        return reused.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // files and directories that couldn't be read
+    public long getSkipped() {
+        return skipped.get();
+    }
+}
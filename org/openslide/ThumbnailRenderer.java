@@ -0,0 +1,156 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Area-averages a region of a slide level into a smaller ARGB image.  The
+// output is divided into blocks of whole output rows (or, for very wide
+// sources, parts of a row), and the source pixels for each block are read
+// separately and averaged as they arrive.  Peak memory is the output
+// plus one source block per thread, regardless of the region size.
+final class ThumbnailRenderer {
+    // source pixels per block
+    private static final long BLOCK_PIXELS = 4 << 20;
+
+    private ThumbnailRenderer() {
+    }
+
+    // read the srcW x srcH region of level at level 0 coordinates (x, y)
+    // and average it into dest, which is dw x dh
+    static void render(OpenSlide os, long x, long y, int level, int srcW,
+            int srcH, int dest[], int dw, int dh) throws IOException {
+        double fx = (double) srcW / dw;
+        double fy = (double) srcH / dh;
+        double perPixel = Math.max(1, Math.ceil(fx) * Math.ceil(fy));
+        int bw;
+        int bh;
+        if (dw * perPixel <= BLOCK_PIXELS) {
+            bw = dw;
+            bh = (int) Math.max(1, BLOCK_PIXELS / (dw * perPixel));
+        } else {
+            bw = (int) Math.max(1, BLOCK_PIXELS / perPixel);
+            bh = 1;
+        }
+        int across = (dw + bw - 1) / bw;
+        int down = (dh + bh - 1) / bh;
+        double downsample = os.getLevelDownsample(level);
+
+        try {
+            IntStream.range(0, across * down).parallel().forEach(i -> {
+                int ox0 = (i % across) * bw;
+                int oy0 = (i / across) * bh;
+                int ox1 = Math.min(dw, ox0 + bw);
+                int oy1 = Math.min(dh, oy0 + bh);
+                try {
+                    renderBlock(os, x, y, level, downsample, srcW, srcH,
+                            dest, dw, dh, ox0, oy0, ox1, oy1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void renderBlock(OpenSlide os, long x, long y, int level,
+            double downsample, int srcW, int srcH, int dest[], int dw,
+            int dh, int ox0, int oy0, int ox1, int oy1) throws IOException {
+        int sx0 = start(ox0, srcW, dw);
+        int sy0 = start(oy0, srcH, dh);
+        int w = end(ox1 - 1, srcW, dw) - sx0;
+        int h = end(oy1 - 1, srcH, dh) - sy0;
+        long bytes = (long) w * h * Integer.BYTES;
+        try (NativeBufferPool.Scratch scratch =
+                NativeBufferPool.acquire(bytes)) {
+            MemorySegment src = scratch.allocate(bytes, Integer.BYTES);
+            os.readRegion(src, x + (long) (sx0 * downsample),
+                    y + (long) (sy0 * downsample), level, w, h);
+            averageBlock(src, w, sx0, sy0, srcW, srcH, dest, dw, dh, ox0,
+                    oy0, ox1, oy1);
+        }
+    }
+
+    // src holds the source pixels for the output block, which start at
+    // (sx0, sy0) and have row stride w
+    private static void averageBlock(MemorySegment src, int w, int sx0,
+            int sy0, int srcW, int srcH, int dest[], int dw, int dh,
+            int ox0, int oy0, int ox1, int oy1) {
+        long sums[] = new long[4 * (ox1 - ox0)];
+        for (int oy = oy0; oy < oy1; oy++) {
+            Arrays.fill(sums, 0);
+            int rowStart = start(oy, srcH, dh) - sy0;
+            int rowEnd = end(oy, srcH, dh) - sy0;
+            for (int sy = rowStart; sy < rowEnd; sy++) {
+                long base = (long) sy * w;
+                for (int ox = ox0; ox < ox1; ox++) {
+                    int s = 4 * (ox - ox0);
+                    int colEnd = end(ox, srcW, dw) - sx0;
+                    for (int sx = start(ox, srcW, dw) - sx0; sx < colEnd;
+                            sx++) {
+                        int p = src.getAtIndex(ValueLayout.JAVA_INT,
+                                base + sx);
+                        sums[s] += p >>> 24;
+                        sums[s + 1] += (p >> 16) & 0xff;
+                        sums[s + 2] += (p >> 8) & 0xff;
+                        sums[s + 3] += p & 0xff;
+                    }
+                }
+            }
+            for (int ox = ox0; ox < ox1; ox++) {
+                int s = 4 * (ox - ox0);
+                long n = (long) (rowEnd - rowStart)
+                        * (end(ox, srcW, dw) - start(ox, srcW, dw));
+                long half = n / 2;
+                dest[oy * dw + ox] = (int) ((sums[s] + half) / n) << 24
+                        | (int) ((sums[s + 1] + half) / n) << 16
+                        | (int) ((sums[s + 2] + half) / n) << 8
+                        | (int) ((sums[s + 3] + half) / n);
+            }
+        }
+    }
+
+    // first source pixel averaged into output pixel i, given the source
+    // and output lengths
+    private static int start(int i, int srcLen, int dstLen) {
+        long pos = (long) i * srcLen / dstLen;
+        if (srcLen >= dstLen) {
+            // leave at least one source pixel for each later output pixel
+            pos = Math.min(pos, srcLen - (dstLen - i));
+        }
+        return (int) pos;
+    }
+
+    // end of the source pixels for output pixel i; never empty
+    private static int end(int i, int srcLen, int dstLen) {
+        if (srcLen >= dstLen) {
+            return i + 1 < dstLen ? start(i + 1, srcLen, dstLen) : srcLen;
+        }
+        return start(i, srcLen, dstLen) + 1;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+
+// A region of a slide.  Pixels are not read until requested.
+public final class Tile {
+    private final OpenSlide os;
+
+    private final long x;
+
+    private final long y;
+
+    private final int level;
+
+    private final int width;
+
+    private final int height;
+
+    // x and y are level 0 coordinates, as for OpenSlide.readRegion()
+    public Tile(OpenSlide os, long x, long y, int level, int width,
+            int height) {
+        if (os == null) {
+            throw new NullPointerException("OpenSlide cannot be null");
+        }
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException(
+                    "width and height must be nonnegative");
+        }
+        this.os = os;
+        this.x = x;
+        this.y = y;
+        this.level = level;
+        this.width = width;
+        this.height = height;
+    }
+
+    public OpenSlide getOpenSlide() {
+        return os;
+    }
+
+    public long getX() {
+        return x;
+    }
+
+    public long getY() {
+        return y;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public BufferedImage readImage() throws IOException {
+        return os.readRegion(x, y, level, width, height);
+    }
+
+    public void readARGB(int dest[]) throws IOException {
+        os.paintRegionARGB(dest, x, y, level, width, height);
+    }
+
+    public void readARGB(MemorySegment dest) throws IOException {
+        os.readRegion(dest, x, y, level, width, height);
+    }
+
+    @Override
+    public int hashCode() {
+        return os.hashCode() + Long.hashCode(x) * 31 + Long.hashCode(y) * 37
+                + level * 41 + width * 43 + height * 47;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof Tile) {
+            Tile t2 = (Tile) obj;
+            return os.equals(t2.os) && x == t2.x && y == t2.y
+                    && level == t2.level && width == t2.width
+                    && height == t2.height;
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Tile[x=" + x + ", y=" + y + ", level=" + level + ", width="
+                + width + ", height=" + height + "]";
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+// Identifies the pixels of a region across OpenSlide handles.  The slide
+// is identified by its quickhash, so keys remain valid when a slide is
+// closed and reopened.
+final class TileKey {
+    private final String slide;
+
+    private final int level;
+
+    private final long x;
+
+    private final long y;
+
+    private final int w;
+
+    private final int h;
+
+    TileKey(String slide, int level, long x, long y, int w, int h) {
+        this.slide = slide;
+        this.level = level;
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+    }
+
+    String getSlide() {
+        return slide;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    long getX() {
+        return x;
+    }
+
+    long getY() {
+        return y;
+    }
+
+    int getWidth() {
+        return w;
+    }
+
+    int getHeight() {
+        return h;
+    }
+
+    long getByteSize() {
+        return (long) w * h * Integer.BYTES;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = slide.hashCode();
+        result = 31 * result + level;
+        result = 31 * result + Long.hashCode(x);
+        result = 31 * result + Long.hashCode(y);
+        result = 31 * result + w;
+        result = 31 * result + h;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+
+        if (obj instanceof TileKey) {
+            TileKey k2 = (TileKey) obj;
+            return slide.equals(k2.slide) && level == k2.level && x == k2.x
+                    && y == k2.y && w == k2.w && h == k2.h;
+        }
+
+        return false;
+    }
+}
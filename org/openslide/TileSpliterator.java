@@ -0,0 +1,121 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Row-major grid of tiles covering one level, split by index range so
+// parallel streams divide the level evenly between workers
+final class TileSpliterator implements Spliterator<Tile> {
+    private final OpenSlide os;
+
+    private final int level;
+
+    private final int tileWidth;
+
+    private final int tileHeight;
+
+    private final long levelWidth;
+
+    private final long levelHeight;
+
+    private final long columns;
+
+    private final double downsample;
+
+    private long index;
+
+    private final long end;
+
+    TileSpliterator(OpenSlide os, int level, int tileWidth, int tileHeight) {
+        this(os, level, tileWidth, tileHeight, 0, -1);
+    }
+
+    private TileSpliterator(OpenSlide os, int level, int tileWidth,
+            int tileHeight, long index, long end) {
+        this.os = os;
+        this.level = level;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        levelWidth = os.getLevelWidth(level);
+        levelHeight = os.getLevelHeight(level);
+        downsample = os.getLevelDownsample(level);
+        columns = ceilDiv(levelWidth, tileWidth);
+        this.index = index;
+        if (end < 0) {
+            end = columns * ceilDiv(levelHeight, tileHeight);
+        }
+        this.end = end;
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+
+    private Tile tileAt(long i) {
+        long levelX = (i % columns) * tileWidth;
+        long levelY = (i / columns) * tileHeight;
+        int w = (int) Math.min(tileWidth, levelWidth - levelX);
+        int h = (int) Math.min(tileHeight, levelHeight - levelY);
+        return new Tile(os, (long) (levelX * downsample),
+                (long) (levelY * downsample), level, w, h);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Tile> action) {
+        if (index >= end) {
+            return false;
+        }
+        action.accept(tileAt(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Tile> action) {
+        while (index < end) {
+            action.accept(tileAt(index++));
+        }
+    }
+
+    @Override
+    public Spliterator<Tile> trySplit() {
+        long mid = (index + end) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        Spliterator<Tile> prefix = new TileSpliterator(os, level, tileWidth,
+                tileHeight, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Predicate;
+
+// Low-resolution foreground mask of a slide, for skipping tiles that are
+// only glass.  Each mask pixel is classified by its HSV saturation after
+// compositing onto the slide background: stained tissue is saturated and
+// glass is not.  The threshold is either fixed or chosen by Otsu's method,
+// and an integral image makes coverage queries constant-time.  Masks for
+// slides with a quickhash are kept in an LRU cache bounded by the size of
+// their integral images; setCacheCapacity(0) disables it.
+public final class TissueMask {
+    public enum Method {
+        // threshold is a floor under the Otsu threshold
+        OTSU,
+        // threshold is used as is
+        FIXED
+    }
+
+    public static final int DEFAULT_SIZE = 1024;
+
+    public static final double DEFAULT_THRESHOLD = 0.05;
+
+    // access-ordered; guarded by itself
+    private static final LinkedHashMap<String, TissueMask> cache =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    // guarded by cache
+    private static long cacheCapacity = 32 << 20;
+
+    private static long cacheSize;
+
+    private final int width;
+
+    private final int height;
+
+    // level 0 pixels per mask pixel
+    private final double downsampleX;
+
+    private final double downsampleY;
+
+    // saturation threshold actually applied, in [0, 1]
+    private final double threshold;
+
+    // tissue pixels above and to the left, (width + 1) x (height + 1)
+    private final int integral[];
+
+    private TissueMask(int width, int height, double downsampleX,
+            double downsampleY, double threshold, int integral[]) {
+        this.width = width;
+        this.height = height;
+        this.downsampleX = downsampleX;
+        this.downsampleY = downsampleY;
+        this.threshold = threshold;
+        this.integral = integral;
+    }
+
+    public static TissueMask get(OpenSlide os) throws IOException {
+        return get(os, DEFAULT_SIZE, Method.OTSU, DEFAULT_THRESHOLD);
+    }
+
+    // build a mask at most maxSize pixels on a side.  threshold is a
+    // saturation between 0 and 1.
+    public static TissueMask get(OpenSlide os, int maxSize, Method method,
+            double threshold) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        if (threshold < 0 || threshold > 1) {
+            throw new IllegalArgumentException(
+                    "threshold must be between 0 and 1");
+        }
+        String quickhash = os.getProperty(OpenSlide.PROPERTY_NAME_QUICKHASH1);
+        // sRGB conversion changes the saturation
+        String key = quickhash + (os.isSRGB() ? "/srgb/" : "/") + maxSize
+                + "/" + method + "/" + threshold;
+        if (quickhash != null) {
+            synchronized (cache) {
+                TissueMask mask = cache.get(key);
+                if (mask != null) {
+                    return mask;
+                }
+            }
+        }
+        TissueMask mask = compute(os, maxSize, method, threshold);
+        if (quickhash != null) {
+            synchronized (cache) {
+                TissueMask old = cache.put(key, mask);
+                if (old != null) {
+                    cacheSize -= old.getByteSize();
+                }
+                cacheSize += mask.getByteSize();
+                trimCache();
+            }
+        }
+        return mask;
+    }
+
+    // bytes of integral images the cache may hold
+    public static long getCacheCapacity() {
+        synchronized (cache) {
+            return cacheCapacity;
+        }
+    }
+
+    public static void setCacheCapacity(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("capacity must be nonnegative");
+        }
+        synchronized (cache) {
+            cacheCapacity = bytes;
+            trimCache();
+        }
+    }
+
+    public static long getCacheSize() {
+        synchronized (cache) {
+            return cacheSize;
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cacheSize = 0;
+        }
+    }
+
+    // called with cache locked
+    private static void trimCache() {
+        Iterator<TissueMask> it = cache.values().iterator();
+        while (cacheSize > cacheCapacity && it.hasNext()) {
+            cacheSize -= it.next().getByteSize();
+            it.remove();
+        }
+    }
+
+    private long getByteSize() {
+        return (long) integral.length * Integer.BYTES;
+    }
+
+    private static TissueMask compute(OpenSlide os, int maxSize,
+            Method method, double threshold) throws IOException {
+        long slideW = os.getLevel0Width();
+        long slideH = os.getLevel0Height();
+        BufferedImage img = os.createThumbnailImage(0, 0, slideW, slideH,
+                maxSize, BufferedImage.TYPE_INT_ARGB);
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int pixels[] = img.getRGB(0, 0, w, h, null, 0, w);
+
+        String bg = os.getProperty(OpenSlide.PROPERTY_NAME_BACKGROUND_COLOR);
+        int bgRGB = bg != null ? Integer.parseInt(bg, 16) : 0xffffff;
+        return compute(pixels, w, h, slideW, slideH, bgRGB, method,
+                threshold);
+    }
+
+    // build a mask from w x h non-premultiplied ARGB thumbnail pixels of
+    // a slideW x slideH slide
+    static TissueMask compute(int pixels[], int w, int h, long slideW,
+            long slideH, int bgRGB, Method method, double threshold) {
+        int bgR = (bgRGB >> 16) & 0xff;
+        int bgG = (bgRGB >> 8) & 0xff;
+        int bgB = bgRGB & 0xff;
+
+        // saturation of each pixel, 0-255
+        int saturation[] = new int[w * h];
+        int histogram[] = new int[256];
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            int a = p >>> 24;
+            int r = composite((p >> 16) & 0xff, bgR, a);
+            int g = composite((p >> 8) & 0xff, bgG, a);
+            int b = composite(p & 0xff, bgB, a);
+            int max = Math.max(r, Math.max(g, b));
+            int min = Math.min(r, Math.min(g, b));
+            int s = max == 0 ? 0 : (max - min) * 255 / max;
+            saturation[i] = s;
+            histogram[s]++;
+        }
+
+        int cutoff = (int) Math.ceil(threshold * 255);
+        if (method == Method.OTSU) {
+            cutoff = Math.max(cutoff, otsu(histogram, pixels.length));
+        }
+
+        int integral[] = new int[(w + 1) * (h + 1)];
+        for (int y = 0; y < h; y++) {
+            int row = 0;
+            for (int x = 0; x < w; x++) {
+                if (saturation[y * w + x] >= cutoff) {
+                    row++;
+                }
+                integral[(y + 1) * (w + 1) + x + 1] =
+                        integral[y * (w + 1) + x + 1] + row;
+            }
+        }
+        return new TissueMask(w, h, (double) slideW / w,
+                (double) slideH / h, cutoff / 255.0, integral);
+    }
+
+    private static int composite(int c, int bg, int a) {
+        return (c * a + bg * (255 - a) + 127) / 255;
+    }
+
+    // the first value in the upper class, maximizing between-class
+    // variance
+    static int otsu(int histogram[], int total) {
+        double sum = 0;
+        for (int i = 0; i < 256; i++) {
+            sum += (double) i * histogram[i];
+        }
+        double sumBelow = 0;
+        long below = 0;
+        double best = -1;
+        int cutoff = 0;
+        for (int t = 0; t < 255; t++) {
+            below += histogram[t];
+            sumBelow += (double) t * histogram[t];
+            long above = total - below;
+            if (below == 0 || above == 0) {
+                continue;
+            }
+            double meanBelow = sumBelow / below;
+            double meanAbove = (sum - sumBelow) / above;
+            double variance = (double) below * above
+                    * (meanBelow - meanAbove) * (meanBelow - meanAbove);
+            if (variance > best) {
+                best = variance;
+                cutoff = t + 1;
+            }
+        }
+        return cutoff;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public boolean isTissue(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("(" + x + ", " + y
+                    + ") is outside the mask");
+        }
+        return count(x, y, x + 1, y + 1) > 0;
+    }
+
+    // fraction of the level 0 region covered by tissue
+    public double getCoverage(long x, long y, long w, long h) {
+        int x0 = clamp(Math.floor(x / downsampleX), width);
+        int y0 = clamp(Math.floor(y / downsampleY), height);
+        int x1 = clamp(Math.ceil((x + w) / downsampleX), width);
+        int y1 = clamp(Math.ceil((y + h) / downsampleY), height);
+        if (x1 <= x0 || y1 <= y0) {
+            return 0;
+        }
+        return (double) count(x0, y0, x1, y1) / ((long) (x1 - x0)
+                * (y1 - y0));
+    }
+
+    public double getCoverage(Tile tile) {
+        double downsample = tile.getOpenSlide().getLevelDownsample(
+                tile.getLevel());
+        return getCoverage(tile.getX(), tile.getY(),
+                (long) Math.ceil(tile.getWidth() * downsample),
+                (long) Math.ceil(tile.getHeight() * downsample));
+    }
+
+    // for filtering OpenSlide.tiles() and the like
+    public Predicate<Tile> tileFilter(double minCoverage) {
+        return tile -> getCoverage(tile) >= minCoverage;
+    }
+
+    private int count(int x0, int y0, int x1, int y1) {
+        int stride = width + 1;
+        return integral[y1 * stride + x1] - integral[y0 * stride + x1]
+                - integral[y1 * stride + x0] + integral[y0 * stride + x0];
+    }
+
+    private static int clamp(double value, int max) {
+        return (int) Math.max(0, Math.min(max, value));
+    }
+}
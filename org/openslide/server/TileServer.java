@@ -0,0 +1,493 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+import org.openslide.AssociatedImage;
+import org.openslide.DeepZoomGenerator;
+import org.openslide.OpenSlide;
+import org.openslide.OpenSlidePool;
+
+// Serves the slides under a directory over HTTP, one virtual thread per
+// request.  Slide paths are relative to the directory:
+//
+//   /dzi/SLIDE.dzi                          Deep Zoom descriptor
+//   /dzi/SLIDE_files/LEVEL/COL_ROW.jpeg     Deep Zoom tile
+//   /thumbnail/SLIDE[?size=N]               JPEG thumbnail
+//   /associated/SLIDE/NAME.png              associated image
+//   /properties/SLIDE                       properties as JSON
+//
+// Responses for slides with a quickhash carry a strong ETag and honor
+// If-None-Match.  Slide handles are shared through an OpenSlidePool.
+// Whether a file is a slide, and its quickhash, are remembered until the
+// file's size or modification time changes, so conditional requests are
+// answered without opening the slide.
+public final class TileServer implements AutoCloseable {
+    private static final Pattern DZI = Pattern.compile("/dzi/(.+)\\.dzi");
+
+    private static final Pattern TILE = Pattern.compile(
+            "/dzi/(.+)_files/(\\d+)/(\\d+)_(\\d+)\\.(jpeg|png)");
+
+    private static final Pattern THUMBNAIL = Pattern.compile(
+            "/thumbnail/(.+)");
+
+    private static final Pattern ASSOCIATED = Pattern.compile(
+            "/associated/(.+)/([^/]+)\\.png");
+
+    private static final Pattern PROPERTIES = Pattern.compile(
+            "/properties/(.+)");
+
+    private static final Pattern SIZE = Pattern.compile(
+            "(?:^|&)size=(\\d+)(?:&|$)");
+
+    private static final int TILE_SIZE = 254;
+
+    private static final int OVERLAP = 1;
+
+    private static final int MAX_THUMBNAIL_SIZE = 2048;
+
+    private static final class Response {
+        final int status;
+
+        final String contentType;
+
+        final byte body[];
+
+        Response(int status, String contentType, byte body[]) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    private static final class NotFoundException extends Exception {
+        NotFoundException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private interface Handler {
+        Response handle(Slide slide, OpenSlide os, Matcher m)
+                throws IOException, NotFoundException;
+    }
+
+    // what's known about a file, valid while its size and modification
+    // time are unchanged
+    private static final class Slide {
+        final File file;
+
+        final long size;
+
+        final FileTime modified;
+
+        // OpenSlide can open the file
+        final boolean valid;
+
+        // set once the slide has been opened
+        volatile boolean opened;
+
+        volatile String quickhash;
+
+        // for the most recent handle from the pool
+        volatile DeepZoomGenerator generator;
+
+        Slide(File file, BasicFileAttributes attrs, boolean valid) {
+            this.file = file;
+            size = attrs.size();
+            modified = attrs.lastModifiedTime();
+            this.valid = valid;
+        }
+
+        boolean isCurrent(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && modified.equals(attrs.lastModifiedTime());
+        }
+
+        DeepZoomGenerator getGenerator(OpenSlide os) {
+            DeepZoomGenerator gen = generator;
+            if (gen == null || gen.getOpenSlide() != os) {
+                gen = new DeepZoomGenerator(os, TILE_SIZE, OVERLAP, false);
+                generator = gen;
+            }
+            return gen;
+        }
+    }
+
+    private final Path root;
+
+    private final OpenSlidePool pool;
+
+    private final ConcurrentHashMap<Path, Slide> slides =
+            new ConcurrentHashMap<>();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong tiles = new AtomicLong();
+
+    private final AtomicLong notModified = new AtomicLong();
+
+    public TileServer(Path root, InetSocketAddress address, int maxOpen)
+            throws IOException {
+        this.root = root.toRealPath();
+        pool = new OpenSlidePool(maxOpen, Duration.ofMinutes(5));
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            executor.close();
+            pool.close();
+            throw e;
+        }
+        server.setExecutor(executor);
+        server.createContext("/", this::serve);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getTilesServed() {
+        return tiles.get();
+    }
+
+    // requests answered with 304 Not Modified
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+        pool.close();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                send(exchange, new Response(405, null, null), null);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            Matcher m;
+            if ((m = TILE.matcher(path)).matches()) {
+                dispatch(exchange, m, "tile-" + m.group(2) + "-" + m.group(3)
+                        + "_" + m.group(4) + "." + m.group(5), this::tile);
+            } else if ((m = DZI.matcher(path)).matches()) {
+                dispatch(exchange, m, "dzi", this::dzi);
+            } else if ((m = THUMBNAIL.matcher(path)).matches()) {
+                int size = thumbnailSize(query);
+                if (size < 0) {
+                    send(exchange, new Response(400, null, null), null);
+                    return;
+                }
+                dispatch(exchange, m, "thumbnail-" + size,
+                        (slide, os, mm) -> image(
+                        os.createThumbnailImage(size), "jpeg"));
+            } else if ((m = ASSOCIATED.matcher(path)).matches()) {
+                dispatch(exchange, m, "associated-" + URLEncoder.encode(
+                        m.group(2), StandardCharsets.UTF_8), this::associated);
+            } else if ((m = PROPERTIES.matcher(path)).matches()) {
+                dispatch(exchange, m, "properties", this::properties);
+            } else {
+                send(exchange, new Response(404, null, null), null);
+            }
+        }
+    }
+
+    private void dispatch(HttpExchange exchange, Matcher m, String resource,
+            Handler handler) throws IOException {
+        Slide slide = resolve(m.group(1));
+        if (slide == null) {
+            send(exchange, new Response(404, null, null), null);
+            return;
+        }
+        // answer from what we already know, without opening the slide
+        if (slide.opened && slide.quickhash != null) {
+            String etag = etag(slide.quickhash, resource);
+            if (matches(exchange.getRequestHeaders(), etag)) {
+                notModified.incrementAndGet();
+                send(exchange, new Response(304, null, null), etag);
+                return;
+            }
+        }
+
+        Response response;
+        String etag = null;
+        try (OpenSlidePool.Lease lease = pool.acquire(slide.file)) {
+            OpenSlide os = lease.getOpenSlide();
+            String quickhash = os.getProperty(
+                    OpenSlide.PROPERTY_NAME_QUICKHASH1);
+            slide.quickhash = quickhash;
+            slide.opened = true;
+            if (quickhash != null) {
+                etag = etag(quickhash, resource);
+                if (matches(exchange.getRequestHeaders(), etag)) {
+                    notModified.incrementAndGet();
+                    send(exchange, new Response(304, null, null), etag);
+                    return;
+                }
+            }
+            response = handler.handle(slide, os, m);
+        } catch (NotFoundException | IllegalArgumentException e) {
+            response = new Response(404, null, null);
+            etag = null;
+        } catch (IOException | RuntimeException e) {
+            // including UncheckedIOException from the property and
+            // associated image maps, and a slide closed under us
+            response = new Response(500, "text/plain; charset=utf-8",
+                    String.valueOf(e.getMessage()).getBytes(
+                    StandardCharsets.UTF_8));
+            etag = null;
+        }
+        send(exchange, response, etag);
+    }
+
+    private static String etag(String quickhash, String resource) {
+        return "\"" + quickhash + "-" + resource + "\"";
+    }
+
+    // map a request path to a slide file inside the root, or null
+    private Slide resolve(String relative) throws IOException {
+        Path path = root.resolve(relative).normalize();
+        if (!path.startsWith(root) || !Files.isRegularFile(path)) {
+            return null;
+        }
+        // reject symlinks leading out of the root
+        path = path.toRealPath();
+        if (!path.startsWith(root)) {
+            return null;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path,
+                BasicFileAttributes.class);
+        Slide slide = slides.get(path);
+        if (slide == null || !slide.isCurrent(attrs)) {
+            File file = path.toFile();
+            slide = new Slide(file, attrs,
+                    OpenSlide.detectVendor(file) != null);
+            slides.put(path, slide);
+        }
+        return slide.valid ? slide : null;
+    }
+
+    private Response dzi(Slide slide, OpenSlide os, Matcher m) {
+        DeepZoomGenerator gen = slide.getGenerator(os);
+        return new Response(200, "application/xml; charset=utf-8",
+                gen.getDzi("jpeg").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response tile(Slide slide, OpenSlide os, Matcher m)
+            throws IOException, NotFoundException {
+        DeepZoomGenerator gen = slide.getGenerator(os);
+        int level;
+        long col;
+        long row;
+        try {
+            level = Integer.parseInt(m.group(2));
+            col = Long.parseLong(m.group(3));
+            row = Long.parseLong(m.group(4));
+        } catch (NumberFormatException e) {
+            throw new NotFoundException();
+        }
+        Response response = image(gen.getTile(level, col, row), m.group(5));
+        tiles.incrementAndGet();
+        return response;
+    }
+
+    private Response associated(Slide slide, OpenSlide os, Matcher m)
+            throws IOException, NotFoundException {
+        AssociatedImage img = os.getAssociatedImages().get(m.group(2));
+        if (img == null) {
+            throw new NotFoundException();
+        }
+        return image(img.toBufferedImage(), "png");
+    }
+
+    private Response properties(Slide slide, OpenSlide os, Matcher m) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, String> e : os.getProperties().entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            appendJsonString(sb, e.getKey());
+            sb.append(':');
+            appendJsonString(sb, e.getValue());
+        }
+        sb.append("}\n");
+        return new Response(200, "application/json",
+                sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Response image(BufferedImage img, String format)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, format, out)) {
+            throw new IOException("Couldn't encode " + format);
+        }
+        return new Response(200, "image/" + format, out.toByteArray());
+    }
+
+    private static int thumbnailSize(String query) {
+        if (query == null) {
+            return 256;
+        }
+        Matcher m = SIZE.matcher(query);
+        if (!m.find()) {
+            return 256;
+        }
+        try {
+            int size = Integer.parseInt(m.group(1));
+            return size > 0 && size <= MAX_THUMBNAIL_SIZE ? size : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean matches(Headers headers, String etag) {
+        for (String value : headers.getOrDefault("If-None-Match",
+                List.of())) {
+            for (String tag : value.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void send(HttpExchange exchange, Response response,
+            String etag) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        if (etag != null) {
+            headers.set("ETag", etag);
+        }
+        if (response.contentType != null) {
+            headers.set("Content-Type", response.contentType);
+        }
+        byte body[] = response.body;
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        if (body == null || response.status == 304) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        if (head) {
+            headers.set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    public static void main(String args[]) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.out.printf("usage: TileServer slide-directory [port "
+                    + "[max-open]]\n");
+            return;
+        }
+        int port = args.length >= 2 ? Integer.parseInt(args[1]) : 8080;
+        int maxOpen = args.length == 3 ? Integer.parseInt(args[2]) : 64;
+        TileServer server = new TileServer(Path.of(args[0]),
+                new InetSocketAddress(port), maxOpen);
+        server.start();
+        System.out.printf("serving %s on port %d\n", args[0],
+                server.getAddress().getPort());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+// Each filter on small images whose results can be worked out by hand.
+// Weights are fixed point, so results that aren't exact may be off by
+// one.
+class ARGBResamplerTest {
+    private static final ARGBResampler.Filter FILTERS[] =
+            ARGBResampler.Filter.values();
+
+    // opaque gray
+    private static int gray(int v) {
+        return 0xff000000 | v << 16 | v << 8 | v;
+    }
+
+    // resample a single row of gray pixels and return the gray levels
+    private static int[] row(ARGBResampler.Filter filter, int dw,
+            int... levels) {
+        int src[] = new int[levels.length];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = gray(levels[i]);
+        }
+        int dest[] = new int[dw];
+        ARGBResampler.resample(src, src.length, 1, dest, dw, 1, filter);
+        int out[] = new int[dw];
+        for (int i = 0; i < dw; i++) {
+            assertEquals(0xff, dest[i] >>> 24);
+            out[i] = dest[i] & 0xff;
+            assertEquals(out[i], (dest[i] >> 16) & 0xff);
+            assertEquals(out[i], (dest[i] >> 8) & 0xff);
+        }
+        return out;
+    }
+
+    private static void assertNear(int expected[], int actual[]) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(Math.abs(expected[i] - actual[i]) <= 1,
+                    "pixel " + i + ": expected " + expected[i] + " but was "
+                    + actual[i]);
+        }
+    }
+
+    @Test
+    void constantImageStaysConstant() {
+        // exact only if every output pixel's weights sum to one
+        int sizes[] = {1, 2, 3, 5, 7, 16, 31, 100};
+        int pixel = 0xc0604020;
+        for (ARGBResampler.Filter filter : FILTERS) {
+            for (int sw : sizes) {
+                for (int dw : sizes) {
+                    int sh = Math.max(1, sw / 2);
+                    int dh = Math.max(1, dw / 3);
+                    int src[] = new int[sw * sh];
+                    Arrays.fill(src, pixel);
+                    int dest[] = new int[dw * dh];
+                    ARGBResampler.resample(src, sw, sh, dest, dw, dh,
+                            filter);
+                    for (int p : dest) {
+                        assertEquals(pixel, p, filter + " " + sw + "x" + sh
+                                + " -> " + dw + "x" + dh);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void box() {
+        assertArrayEquals(new int[] {20, 60},
+                row(ARGBResampler.Filter.BOX, 2, 10, 30, 50, 70));
+        // the last output pixel takes the leftover source pixel
+        assertArrayEquals(new int[] {20, 60},
+                row(ARGBResampler.Filter.BOX, 2, 10, 30, 40, 60, 80));
+        // upsampling repeats pixels
+        assertArrayEquals(new int[] {10, 10, 90, 90},
+                row(ARGBResampler.Filter.BOX, 4, 10, 90));
+    }
+
+    @Test
+    void area() {
+        // 3 -> 2: the middle pixel is split between both outputs
+        assertNear(new int[] {50, 110},
+                row(ARGBResampler.Filter.AREA, 2, 30, 90, 120));
+        assertArrayEquals(new int[] {40, 80},
+                row(ARGBResampler.Filter.AREA, 2, 20, 60, 60, 100));
+        assertArrayEquals(new int[] {10, 10, 90, 90},
+                row(ARGBResampler.Filter.AREA, 4, 10, 90));
+    }
+
+    @Test
+    void bilinear() {
+        // edge outputs are clamped to the edge pixels rather than
+        // blended with pixels outside the image
+        assertNear(new int[] {10, 30, 70, 90},
+                row(ARGBResampler.Filter.BILINEAR, 4, 10, 90));
+        // 4 -> 2 samples halfway between each pair
+        assertNear(new int[] {20, 60},
+                row(ARGBResampler.Filter.BILINEAR, 2, 10, 30, 50, 70));
+        // a single source pixel
+        assertArrayEquals(new int[] {77, 77, 77},
+                row(ARGBResampler.Filter.BILINEAR, 3, 77));
+    }
+
+    @Test
+    void separable() {
+        // 2x2 -> 1x1 averages all four pixels, whichever axis goes first
+        int src[] = {gray(0), gray(40), gray(80), gray(120)};
+        for (ARGBResampler.Filter filter : FILTERS) {
+            int dest[] = new int[1];
+            ARGBResampler.resample(src, 2, 2, dest, 1, 1, filter);
+            assertEquals(gray(60), dest[0], filter.toString());
+        }
+    }
+
+    @Test
+    void rejectsBadSizes() {
+        int buf[] = new int[4];
+        assertThrows(IllegalArgumentException.class,
+                () -> ARGBResampler.resample(buf, 0, 1, buf, 1, 1,
+                ARGBResampler.Filter.BOX));
+        assertThrows(ArrayIndexOutOfBoundsException.class,
+                () -> ARGBResampler.resample(buf, 4, 2, buf, 1, 1,
+                ARGBResampler.Filter.BOX));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+// Level math checked against openslide.deepzoom.DeepZoomGenerator from the
+// Python binding, for a slide with the geometry of CMU-1.svs.  Expected
+// values are what the Python generator returns for the same inputs.
+class DeepZoomGeneratorTest {
+    private static final long WIDTHS[] = {46000, 11500, 2875};
+
+    private static final long HEIGHTS[] = {32914, 8228, 2057};
+
+    private static final double DOWNSAMPLES[] = {
+        1.0, 4.000121536217793, 16.00048614487117,
+    };
+
+    private static final Map<String, String> BOUNDS = Map.of(
+            OpenSlide.PROPERTY_NAME_BOUNDS_X, "1000",
+            OpenSlide.PROPERTY_NAME_BOUNDS_Y, "2000",
+            OpenSlide.PROPERTY_NAME_BOUNDS_WIDTH, "30001",
+            OpenSlide.PROPERTY_NAME_BOUNDS_HEIGHT, "20003");
+
+    private static DeepZoomGenerator generator(int tileSize, int overlap,
+            boolean limitBounds) {
+        return new DeepZoomGenerator(null, WIDTHS, HEIGHTS, DOWNSAMPLES,
+                BOUNDS::get, tileSize, overlap, limitBounds);
+    }
+
+    // each row: level, width, height, columns, rows
+    private static void checkLevels(DeepZoomGenerator gen, int levels,
+            long tiles, long table[][]) {
+        assertEquals(levels, gen.getLevelCount());
+        assertEquals(tiles, gen.getTileCount());
+        for (long row[] : table) {
+            int level = (int) row[0];
+            String msg = "level " + level;
+            assertEquals(row[1], gen.getLevelWidth(level), msg);
+            assertEquals(row[2], gen.getLevelHeight(level), msg);
+            assertEquals(row[3], gen.getTileColumns(level), msg);
+            assertEquals(row[4], gen.getTileRows(level), msg);
+        }
+    }
+
+    // each row: level, col, row, then l0 x, l0 y, slide level, level
+    // width, level height, tile width, tile height
+    private static void checkTiles(DeepZoomGenerator gen, long table[][]) {
+        for (long row[] : table) {
+            DeepZoomGenerator.TileInfo info = gen.getTileInfo((int) row[0],
+                    row[1], row[2]);
+            String msg = "tile " + row[0] + "/" + row[1] + "_" + row[2];
+            assertEquals(row[3], info.l0X, msg);
+            assertEquals(row[4], info.l0Y, msg);
+            assertEquals(row[5], info.slideLevel, msg);
+            assertEquals(row[6], info.levelWidth, msg);
+            assertEquals(row[7], info.levelHeight, msg);
+            assertEquals(row[8], info.tileWidth, msg);
+            assertEquals(row[9], info.tileHeight, msg);
+        }
+    }
+
+    @Test
+    void defaults() {
+        DeepZoomGenerator gen = generator(254, 1, false);
+        checkLevels(gen, 17, 31644, new long[][] {
+            {0, 1, 1, 1, 1},
+            {1, 2, 2, 1, 1},
+            {8, 180, 129, 1, 1},
+            {10, 719, 515, 3, 3},
+            {12, 2875, 2058, 12, 9},
+            {13, 5750, 4115, 23, 17},
+            {15, 23000, 16457, 91, 65},
+            {16, 46000, 32914, 182, 130},
+        });
+        checkTiles(gen, new long[][] {
+            // no overlap on the outer edges
+            {16, 0, 0, 0, 0, 0, 255, 255, 255, 255},
+            {16, 1, 2, 253, 507, 0, 256, 256, 256, 256},
+            // partial tile in the bottom right corner
+            {16, 181, 129, 45973, 32765, 0, 27, 149, 27, 149},
+            {14, 3, 1, 3044, 1012, 0, 1024, 1024, 256, 256},
+            {13, 22, 16, 44696, 32504, 1, 326, 102, 163, 52},
+            {11, 1, 1, 8096, 8096, 2, 512, 512, 256, 256},
+            // read from the smallest slide level and scaled down
+            {8, 0, 0, 0, 0, 2, 2875, 2057, 180, 129},
+            {0, 0, 0, 0, 0, 2, 2875, 2057, 1, 1},
+        });
+    }
+
+    @Test
+    void withoutOverlap() {
+        DeepZoomGenerator gen = generator(256, 0, false);
+        checkLevels(gen, 17, 31106, new long[][] {
+            {8, 180, 129, 1, 1},
+            {10, 719, 515, 3, 3},
+            {15, 23000, 16457, 90, 65},
+            {16, 46000, 32914, 180, 129},
+        });
+        checkTiles(gen, new long[][] {
+            {16, 0, 0, 0, 0, 0, 256, 256, 256, 256},
+            {16, 1, 2, 256, 512, 0, 256, 256, 256, 256},
+            {16, 179, 128, 45824, 32768, 0, 176, 146, 176, 146},
+            {14, 3, 1, 3072, 1024, 0, 1024, 1024, 256, 256},
+            {13, 22, 16, 45056, 32768, 1, 236, 36, 118, 19},
+            {11, 1, 1, 8192, 8192, 2, 512, 512, 256, 256},
+        });
+    }
+
+    @Test
+    void limitBounds() {
+        DeepZoomGenerator gen = generator(254, 1, true);
+        checkLevels(gen, 16, 12616, new long[][] {
+            {0, 1, 1, 1, 1},
+            {8, 235, 157, 1, 1},
+            {10, 938, 626, 4, 3},
+            {12, 3751, 2501, 15, 10},
+            {13, 7501, 5001, 30, 20},
+            {15, 30001, 20003, 119, 79},
+        });
+        checkTiles(gen, new long[][] {
+            // offset by the bounds origin
+            {15, 0, 0, 1000, 2000, 0, 255, 255, 255, 255},
+            {15, 1, 2, 1253, 2507, 0, 256, 256, 256, 256},
+            {15, 118, 78, 30971, 21811, 0, 30, 192, 30, 192},
+            {13, 3, 1, 4044, 3012, 0, 1024, 1024, 256, 256},
+            {12, 14, 9, 29440, 20280, 1, 391, 431, 196, 216},
+            {10, 1, 1, 9096, 10096, 2, 512, 512, 256, 256},
+            // clipped to the bounds in the slide level
+            {8, 0, 0, 1000, 2000, 2, 1876, 1251, 235, 157},
+            {0, 0, 0, 1000, 2000, 2, 1876, 1251, 1, 1},
+        });
+    }
+
+    @Test
+    void rejectsBadAddresses() {
+        DeepZoomGenerator gen = generator(254, 1, false);
+        assertThrows(IllegalArgumentException.class,
+                () -> gen.getTileInfo(17, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> gen.getTileInfo(16, 182, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> gen.getTileInfo(16, 0, -1));
+    }
+}
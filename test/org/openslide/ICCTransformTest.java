@@ -0,0 +1,134 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.color.CMMException;
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ICCTransformTest {
+    // large enough to be split into parallel chunks
+    private static final int COUNT = 3 * (1 << 18) + 17;
+
+    private static ICCTransform srgb() throws Exception {
+        return ICCTransform.get(ICC_Profile.getInstance(ColorSpace.CS_sRGB)
+                .getData());
+    }
+
+    // random premultiplied pixels, including transparent ones
+    private static int[] pixels() {
+        Random random = new Random(1);
+        int buf[] = new int[COUNT];
+        for (int i = 0; i < buf.length; i++) {
+            int a = switch (random.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(256);
+                default -> 255;
+            };
+            int r = random.nextInt(a + 1);
+            int g = random.nextInt(a + 1);
+            int b = random.nextInt(a + 1);
+            buf[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+        return buf;
+    }
+
+    @Test
+    void cachedByProfile() throws Exception {
+        assertSame(srgb(), srgb());
+    }
+
+    @Test
+    void unparseableProfile() {
+        IOException e = assertThrows(IOException.class,
+                () -> ICCTransform.get(new byte[] {1, 2, 3}));
+        assertEquals("Invalid ICC profile", e.getMessage());
+    }
+
+    @Test
+    void unusableProfile() {
+        // parses, but without its red tone curve can't be linked
+        byte profile[] = ICC_Profile.getInstance(ColorSpace.CS_sRGB)
+                .getData();
+        ByteBuffer buf = ByteBuffer.wrap(profile);
+        int tags = buf.getInt(128);
+        for (int i = 0; i < tags; i++) {
+            int offset = 132 + 12 * i;
+            if (buf.getInt(offset) == 0x72545243) {
+                // rTRC
+                buf.put(offset, "zzzz".getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> ICCTransform.get(profile));
+        assertEquals("Invalid ICC profile", e.getMessage());
+        assertTrue(e.getCause() instanceof CMMException);
+    }
+
+    @Test
+    void srgbIsNearlyIdentity() throws Exception {
+        int src[] = pixels();
+        int dest[] = src.clone();
+        srgb().apply(MemorySegment.ofArray(dest), dest.length);
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(src[i] >>> 24, dest[i] >>> 24);
+            if (src[i] >>> 24 != 255) {
+                continue;
+            }
+            for (int shift = 0; shift < 24; shift += 8) {
+                int expected = (src[i] >> shift) & 0xff;
+                int actual = (dest[i] >> shift) & 0xff;
+                assertTrue(Math.abs(expected - actual) <= 2,
+                        "pixel " + i + ": " + Integer.toHexString(src[i])
+                        + " -> " + Integer.toHexString(dest[i]));
+            }
+        }
+    }
+
+    @Test
+    void confinedMatchesShared() throws Exception {
+        ICCTransform transform = srgb();
+        int src[] = pixels();
+        try (Arena confined = Arena.ofConfined();
+                Arena shared = Arena.ofShared()) {
+            long bytes = (long) COUNT * Integer.BYTES;
+            MemorySegment a = confined.allocate(bytes, Integer.BYTES);
+            MemorySegment b = shared.allocate(bytes, Integer.BYTES);
+            MemorySegment.copy(src, 0, a, JAVA_INT, 0, COUNT);
+            MemorySegment.copy(src, 0, b, JAVA_INT, 0, COUNT);
+            // other threads can't touch a, so it's converted here
+            transform.apply(a, COUNT);
+            transform.apply(b, COUNT);
+            assertArrayEquals(b.toArray(JAVA_INT), a.toArray(JAVA_INT));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+// Compares each output mode against a single readRegion call.  Odd tile
+// and strip sizes leave partial tiles at the edges, and several threads
+// decode each strip.
+@Timeout(60)
+class LargeRegionReaderTest {
+    private static final int TILE = 16;
+
+    private static final int THREADS = 4;
+
+    @TempDir
+    Path dir;
+
+    private static int width(OpenSlide os) {
+        return (int) Math.min(os.getLevel0Width(), 100);
+    }
+
+    private static int height(OpenSlide os) {
+        return (int) Math.min(os.getLevel0Height(), 70);
+    }
+
+    private static int[] expected(OpenSlide os, int w, int h)
+            throws Exception {
+        int buf[] = new int[w * h];
+        os.paintRegionARGB(buf, 0, 0, 0, w, h);
+        return buf;
+    }
+
+    @Test
+    void tiles() throws Exception {
+        try (OpenSlide os = SyntheticSlide.open();
+                LargeRegionReader reader = new LargeRegionReader(os, TILE,
+                        THREADS)) {
+            int w = width(os);
+            int h = height(os);
+            int actual[] = new int[w * h];
+            reader.read(0, 0, 0, w, h, (x, y, tw, th, pixels) -> {
+                for (int row = 0; row < th; row++) {
+                    MemorySegment.copy(pixels, JAVA_INT,
+                            (long) row * tw * Integer.BYTES, actual,
+                            (int) ((y + row) * w + x), tw);
+                }
+            });
+            assertArrayEquals(expected(os, w, h), actual);
+        }
+    }
+
+    @Test
+    void strips() throws Exception {
+        try (OpenSlide os = SyntheticSlide.open();
+                LargeRegionReader reader = new LargeRegionReader(os, TILE,
+                        THREADS)) {
+            int w = width(os);
+            int h = height(os);
+            int actual[] = new int[w * h];
+            reader.read(0, 0, 0, w, h, 9, (y, sh, pixels) -> {
+                assertEquals((long) w * sh * Integer.BYTES,
+                        pixels.byteSize());
+                MemorySegment.copy(pixels, JAVA_INT, 0, actual,
+                        (int) (y * w), w * sh);
+            });
+            assertArrayEquals(expected(os, w, h), actual);
+        }
+    }
+
+    @Test
+    void file() throws Exception {
+        try (OpenSlide os = SyntheticSlide.open();
+                LargeRegionReader reader = new LargeRegionReader(os, TILE,
+                        THREADS)) {
+            int w = width(os);
+            int h = height(os);
+            Path file = dir.resolve("region.raw");
+            reader.read(0, 0, 0, w, h, file);
+            IntBuffer buf = ByteBuffer.wrap(Files.readAllBytes(
+                    file)).order(ByteOrder.nativeOrder()).asIntBuffer();
+            int actual[] = new int[buf.remaining()];
+            buf.get(actual);
+            assertArrayEquals(expected(os, w, h), actual);
+        }
+    }
+}
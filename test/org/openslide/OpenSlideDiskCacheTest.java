@@ -0,0 +1,238 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openslide.TestTiles.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+@Timeout(120)
+class OpenSlideDiskCacheTest {
+    private static final int TILE = 64;
+
+    // smallest capacity that still divides into several segments
+    private static final long CAPACITY = 8 << 20;
+
+    @TempDir
+    Path dir;
+
+    private static TileKey key(long x, long y) {
+        return TestTiles.key(x, y, TILE);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+                "*.seg")) {
+            for (Path path : stream) {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            TileKey key = key(0, 0);
+            assertNull(get(cache, key));
+            put(cache, key);
+            cache.flush();
+            assertArrayEquals(pixels(key), get(cache, key));
+            assertArrayEquals(pixels(key), get(cache, key));
+            assertNull(get(cache, key(TILE, 0)));
+            assertEquals(2, cache.getHits());
+            assertEquals(2, cache.getMisses());
+            assertEquals(0, cache.getErrors());
+            assertEquals(0, cache.getDropped());
+        }
+    }
+
+    @Test
+    void putAfterCloseIsDropped() throws Exception {
+        OpenSlideDiskCache cache = new OpenSlideDiskCache(dir, CAPACITY);
+        cache.close();
+        put(cache, key(0, 0));
+        cache.flush();
+        assertEquals(1, cache.getDropped());
+    }
+
+    @Test
+    void persistsAcrossInstances() throws Exception {
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            for (int i = 0; i < 100; i++) {
+                put(cache, key(i * TILE, 0));
+            }
+        }
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            for (int i = 0; i < 100; i++) {
+                TileKey key = key(i * TILE, 0);
+                assertArrayEquals(pixels(key), get(cache, key));
+            }
+            assertEquals(0, cache.getErrors());
+        }
+    }
+
+    @Test
+    void seesRecordsFromOtherInstances() throws Exception {
+        try (OpenSlideDiskCache a = new OpenSlideDiskCache(dir, CAPACITY);
+                OpenSlideDiskCache b = new OpenSlideDiskCache(dir,
+                        CAPACITY)) {
+            TileKey key = key(0, 0);
+            put(a, key);
+            a.flush();
+            // picked up by the periodic rescan
+            Thread.sleep(1100);
+            assertArrayEquals(pixels(key), get(b, key));
+        }
+    }
+
+    @Test
+    void evictionBoundsSize() throws Exception {
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            // about four times the capacity
+            for (int i = 0; i < 2000; i++) {
+                TileKey key = key(i * TILE, 0);
+                put(cache, key);
+                cache.flush();
+                assertTrue(cache.getSize() <= CAPACITY);
+                assertArrayEquals(pixels(key), get(cache, key));
+            }
+            long total = 0;
+            for (Path path : segmentFiles()) {
+                total += Files.size(path);
+            }
+            assertTrue(total <= CAPACITY);
+            // the oldest records went with their segments
+            assertNull(get(cache, key(0, 0)));
+            assertEquals(0, cache.getErrors());
+        }
+    }
+
+    @Test
+    void damagedRecordIsMiss() throws Exception {
+        TileKey good = key(0, 0);
+        TileKey bad = key(TILE, 0);
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            put(cache, good);
+            put(cache, bad);
+        }
+        // flip the last pixel byte, which belongs to the second record
+        List<Path> files = segmentFiles();
+        assertEquals(1, files.size());
+        try (FileChannel ch = FileChannel.open(files.get(0),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(1);
+            long pos = ch.size() - 1;
+            ch.read(buf, pos);
+            buf.put(0, (byte) ~buf.get(0));
+            buf.position(0);
+            ch.write(buf, pos);
+        }
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            assertNull(get(cache, bad));
+            assertArrayEquals(pixels(good), get(cache, good));
+        }
+    }
+
+    @Test
+    void ioErrorsAreCounted() throws Exception {
+        try (OpenSlideDiskCache cache = new OpenSlideDiskCache(dir,
+                CAPACITY)) {
+            // a directory where the first segment file belongs
+            Path blocker = dir.resolve("000000000000.seg");
+            Files.createDirectory(blocker);
+            TileKey key = key(0, 0);
+            put(cache, key);
+            cache.flush();
+            assertNull(get(cache, key));
+            assertTrue(cache.getErrors() > 0);
+
+            // and the cache recovers once the problem goes away
+            Files.delete(blocker);
+            put(cache, key);
+            cache.flush();
+            assertArrayEquals(pixels(key), get(cache, key));
+        }
+    }
+
+    @Test
+    void concurrentInstances() throws Exception {
+        try (OpenSlideDiskCache a = new OpenSlideDiskCache(dir, CAPACITY);
+                OpenSlideDiskCache b = new OpenSlideDiskCache(dir,
+                        CAPACITY)) {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                OpenSlideDiskCache cache = i % 2 == 0 ? a : b;
+                int seed = i;
+                Thread t = new Thread(() -> {
+                    Random random = new Random(seed);
+                    try {
+                        for (int n = 0; n < 2000; n++) {
+                            TileKey key = key(random.nextInt(1000) * TILE,
+                                    0);
+                            int buf[] = get(cache, key);
+                            if (buf == null) {
+                                put(cache, key);
+                            } else {
+                                assertArrayEquals(pixels(key), buf);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                t.start();
+                threads.add(t);
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            assertEquals(0, a.getErrors());
+            assertEquals(0, b.getErrors());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+// The striped reader counts in OpenSlideFFM.Ref, exercised with a wrapper
+// that records when it runs instead of freeing a native object.
+@SuppressWarnings("try")
+@Timeout(60)
+class OpenSlideFFMRefTest {
+    private static final class Wrapper extends OpenSlideFFM.Ref.Wrapper {
+        final AtomicInteger runs = new AtomicInteger();
+
+        final AtomicBoolean freed = new AtomicBoolean();
+
+        Wrapper() {
+            super(MemorySegment.NULL);
+        }
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+            freed.set(true);
+        }
+    }
+
+    private static final class Ref extends OpenSlideFFM.Ref {
+        Ref(Wrapper wrapper) {
+            super(wrapper);
+        }
+    }
+
+    @Test
+    void closeFreesOnce() {
+        Wrapper wrapper = new Wrapper();
+        Ref ref = new Ref(wrapper);
+        try (OpenSlideFFM.Ref.ScopedLock l = ref.lock()) {
+            assertSame(MemorySegment.NULL, ref.getSegment());
+        }
+        ref.close();
+        ref.close();
+        assertEquals(1, wrapper.runs.get());
+        assertThrows(OpenSlideDisposedException.class, () -> ref.lock());
+    }
+
+    @Test
+    void segmentRequiresLock() {
+        Ref ref = new Ref(new Wrapper());
+        assertThrows(IllegalStateException.class, () -> ref.getSegment());
+        ref.close();
+    }
+
+    @Test
+    void closeWaitsForReaders() throws Exception {
+        Wrapper wrapper = new Wrapper();
+        Ref ref = new Ref(wrapper);
+        Thread closer;
+        try (OpenSlideFFM.Ref.ScopedLock l = ref.lock()) {
+            closer = new Thread(ref::close);
+            closer.start();
+            // close() can't finish while we hold the lock
+            closer.join(200);
+            assertTrue(closer.isAlive());
+            assertFalse(wrapper.freed.get());
+            ref.getSegment();
+        }
+        closer.join();
+        assertEquals(1, wrapper.runs.get());
+    }
+
+    @Test
+    void concurrentReadersNeverSeeFreed() throws Exception {
+        int threads = 2 * Runtime.getRuntime().availableProcessors() + 1;
+        for (int round = 0; round < 20; round++) {
+            Wrapper wrapper = new Wrapper();
+            Ref ref = new Ref(wrapper);
+            CountDownLatch started = new CountDownLatch(threads);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Thread t = new Thread(() -> {
+                    started.countDown();
+                    try {
+                        while (true) {
+                            try (OpenSlideFFM.Ref.ScopedLock l = ref.lock()) {
+                                ref.getSegment();
+                                if (wrapper.freed.get()) {
+                                    throw new AssertionError(
+                                            "Freed while locked");
+                                }
+                            }
+                        }
+                    } catch (OpenSlideDisposedException e) {
+                        // done
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                t.start();
+                readers.add(t);
+            }
+            started.await();
+            ref.close();
+            for (Thread t : readers) {
+                t.join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+            assertEquals(1, wrapper.runs.get());
+        }
+    }
+}
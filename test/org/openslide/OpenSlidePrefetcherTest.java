@@ -0,0 +1,100 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(60)
+class OpenSlidePrefetcherTest {
+    // a tile size that leaves room to pan across level 0
+    private static int tileSize(OpenSlide os) {
+        return (int) Math.max(1, Math.min(16, os.getLevel0Width() / 8));
+    }
+
+    // pan right along the top row, so the next tiles are predicted
+    private static void pan(OpenSlide os, int tile) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            os.readRegion(i * tile, 0, 0, tile, tile);
+        }
+    }
+
+    // wait for a prefetch to be read
+    private static void awaitIssued(OpenSlidePrefetcher p)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (p.getIssued() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(p.getIssued() > 0, "nothing prefetched");
+    }
+
+    @Test
+    void prefetchesWhilePanning() throws Exception {
+        try (OpenSlide os = SyntheticSlide.open();
+                OpenSlidePrefetcher p = new OpenSlidePrefetcher(os, 1, 16,
+                        Duration.ofMinutes(1))) {
+            pan(os, tileSize(os));
+            awaitIssued(p);
+            assertEquals(0, p.getFailed());
+        }
+    }
+
+    @Test
+    void invalidReadsDontStall() throws Exception {
+        try (OpenSlide os = SyntheticSlide.open();
+                OpenSlidePrefetcher p = new OpenSlidePrefetcher(os, 1, 16,
+                        Duration.ofMinutes(1))) {
+            int tile = tileSize(os);
+            // each of these must end the foreground read it began, or
+            // the prefetch threads would wait for it forever
+            int levels[] = {-1, os.getLevelCount(), Integer.MAX_VALUE};
+            for (int level : levels) {
+                try {
+                    os.readRegion(0, 0, level, tile, tile);
+                } catch (IOException | RuntimeException e) {
+                    // rejected by OpenSlide
+                }
+            }
+            os.paintRegionARGB(new int[0], 0, 0, 0, 0, 0);
+            pan(os, tile);
+            awaitIssued(p);
+        }
+    }
+
+    @Test
+    void closeDetaches() throws Exception {
+        try (OpenSlide os = SyntheticSlide.open()) {
+            OpenSlidePrefetcher p = new OpenSlidePrefetcher(os, 1, 16,
+                    Duration.ofMinutes(1));
+            p.close();
+            pan(os, tileSize(os));
+            Thread.sleep(200);
+            assertEquals(0, p.getIssued());
+            assertEquals(0, p.getQueued());
+        }
+    }
+}
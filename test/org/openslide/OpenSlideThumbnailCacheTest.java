@@ -0,0 +1,95 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpenSlideThumbnailCacheTest {
+    @TempDir
+    Path dir;
+
+    private static BufferedImage image(int rgb) {
+        BufferedImage img = new BufferedImage(8, 6,
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, rgb);
+            }
+        }
+        return img;
+    }
+
+    @Test
+    void keyedByColorModeAndSize() throws Exception {
+        OpenSlideThumbnailCache cache = new OpenSlideThumbnailCache(dir,
+                1 << 20);
+        cache.put("hash", false, 64, image(0x102030));
+        cache.put("hash", true, 64, image(0x405060));
+
+        BufferedImage plain = cache.get("hash", false, 64);
+        BufferedImage srgb = cache.get("hash", true, 64);
+        assertEquals(BufferedImage.TYPE_INT_RGB, plain.getType());
+        assertEquals(0x102030, plain.getRGB(3, 3) & 0xffffff);
+        assertEquals(0x405060, srgb.getRGB(3, 3) & 0xffffff);
+        assertNull(cache.get("hash", false, 128));
+        assertNull(cache.get("other", false, 64));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void damagedThumbnailIsDeletedMiss() throws Exception {
+        OpenSlideThumbnailCache cache = new OpenSlideThumbnailCache(dir,
+                1 << 20);
+        Path file = dir.resolve("hash-64.png");
+        Files.write(file, new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 1});
+        assertNull(cache.get("hash", false, 64));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getErrors());
+        assertFalse(Files.exists(file));
+
+        cache.put("hash", false, 64, image(0x102030));
+        assertEquals(0x102030,
+                cache.get("hash", false, 64).getRGB(0, 0) & 0xffffff);
+    }
+
+    @Test
+    void failedStoreIsSkipped() throws Exception {
+        OpenSlideThumbnailCache cache = new OpenSlideThumbnailCache(dir,
+                1 << 20);
+        // a nonempty directory where the thumbnail belongs
+        Path blocker = dir.resolve("hash-64.png");
+        Files.createDirectories(blocker.resolve("child"));
+        cache.put("hash", false, 64, image(0x102030));
+        assertEquals(1, cache.getErrors());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
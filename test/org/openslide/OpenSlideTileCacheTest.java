@@ -0,0 +1,170 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openslide.TestTiles.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(60)
+class OpenSlideTileCacheTest {
+    private static final int TILE = 16;
+
+    private static TileKey key(long x, long y) {
+        return TestTiles.key(x, y, TILE);
+    }
+
+    @Test
+    void roundTrip() {
+        OpenSlideTileCache cache = new OpenSlideTileCache(1 << 20);
+        TileKey key = key(0, 0);
+        assertNull(get(cache, key));
+        put(cache, key);
+        assertArrayEquals(pixels(key), get(cache, key));
+        assertNull(get(cache, key(TILE, 0)));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(key.getByteSize(), cache.getSize());
+    }
+
+    @Test
+    void oversizedRegionNotCached() {
+        OpenSlideTileCache cache = new OpenSlideTileCache(1 << 10);
+        TileKey key = key(0, 0);
+        put(cache, key);
+        assertNull(get(cache, key));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getRejected());
+    }
+
+    @Test
+    void evictionBoundsSize() {
+        // room for about four tiles per stripe
+        long capacity = 16 * 4 * key(0, 0).getByteSize();
+        OpenSlideTileCache cache = new OpenSlideTileCache(capacity);
+        for (int i = 0; i < 1000; i++) {
+            TileKey key = key(i * TILE, 0);
+            put(cache, key);
+            assertTrue(cache.getSize() <= capacity);
+            // evicted entries are reused for new ones, which must not
+            // expose stale pixels
+            assertArrayEquals(pixels(key), get(cache, key));
+        }
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    void mixedSizesShareBlocks() {
+        OpenSlideTileCache cache = new OpenSlideTileCache(1 << 20);
+        List<TileKey> keys = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // edge tiles of several sizes, interleaved with full ones
+            int size = i % 3 == 0 ? TILE : 1 + i % 13;
+            keys.add(TestTiles.key(i * TILE, 0, size));
+        }
+        for (TileKey key : keys) {
+            put(cache, key);
+        }
+        long size = 0;
+        for (TileKey key : keys) {
+            assertArrayEquals(pixels(key), get(cache, key));
+            size += key.getByteSize();
+        }
+        assertEquals(size, cache.getSize());
+        // free every block, then fill them again
+        cache.clear();
+        for (TileKey key : keys) {
+            put(cache, key);
+            assertArrayEquals(pixels(key), get(cache, key));
+        }
+    }
+
+    @Test
+    void repeatedHitsSurviveScan() {
+        long capacity = 16 * 8 * key(0, 0).getByteSize();
+        OpenSlideTileCache cache = new OpenSlideTileCache(capacity);
+        TileKey hot = key(0, 0);
+        put(cache, hot);
+        // promote to the protected segment
+        get(cache, hot);
+        for (int i = 1; i < 2000; i++) {
+            put(cache, key(i * TILE, 0));
+        }
+        assertArrayEquals(pixels(hot), get(cache, hot));
+    }
+
+    @Test
+    void clear() {
+        OpenSlideTileCache cache = new OpenSlideTileCache(1 << 20);
+        for (int i = 0; i < 10; i++) {
+            put(cache, key(i * TILE, 0));
+        }
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        for (int i = 0; i < 10; i++) {
+            assertNull(get(cache, key(i * TILE, 0)));
+        }
+    }
+
+    @Test
+    void concurrentReadersAndWriters() throws Exception {
+        // small enough that entries are evicted and reused while being read
+        long capacity = 16 * 4 * key(0, 0).getByteSize();
+        OpenSlideTileCache cache = new OpenSlideTileCache(capacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int seed = i;
+            Thread t = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int n = 0; n < 20000; n++) {
+                        TileKey key = key(random.nextInt(256) * TILE, 0);
+                        int buf[] = get(cache, key);
+                        if (buf == null) {
+                            put(cache, key);
+                        } else {
+                            assertArrayEquals(pixels(key), buf);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(cache.getSize() <= capacity);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(60)
+class ParallelLoopTest {
+    private static final int SLOTS = 3;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void runsEveryIterationOnce() throws Exception {
+        AtomicLongArray runs = new AtomicLongArray(1000);
+        ParallelLoop.run(executor, SLOTS, runs.length(),
+                i -> runs.incrementAndGet((int) i));
+        for (int i = 0; i < runs.length(); i++) {
+            assertEquals(1, runs.get(i));
+        }
+    }
+
+    @Test
+    void boundsIterationsInFlight() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        ParallelLoop.run(executor, SLOTS, 200, i -> {
+            max.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.yield();
+            running.decrementAndGet();
+        });
+        assertTrue(max.get() <= SLOTS);
+    }
+
+    @Test
+    void ioExceptionReachesCaller() {
+        IOException thrown = new IOException("boom");
+        IOException e = assertThrows(IOException.class,
+                () -> ParallelLoop.run(executor, SLOTS, 100, i -> {
+                    if (i == 50) {
+                        throw thrown;
+                    }
+                }));
+        assertSame(thrown, e);
+    }
+
+    @Test
+    void errorReachesCaller() {
+        AssertionError thrown = new AssertionError("boom");
+        AssertionError e = assertThrows(AssertionError.class,
+                () -> ParallelLoop.run(executor, SLOTS, 100, i -> {
+                    if (i == 50) {
+                        throw thrown;
+                    }
+                }));
+        assertSame(thrown, e);
+    }
+
+    @Test
+    void failureStopsLaterIterations() {
+        AtomicInteger runs = new AtomicInteger();
+        assertThrows(IllegalStateException.class,
+                () -> ParallelLoop.run(executor, SLOTS, 100000, i -> {
+                    runs.incrementAndGet();
+                    throw new IllegalStateException();
+                }));
+        assertTrue(runs.get() < 100000);
+    }
+}
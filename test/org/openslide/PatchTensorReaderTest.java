@@ -0,0 +1,89 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+// Patches are converted on worker threads, so destinations they can't
+// access must give the same tensor as a shared one.
+@Timeout(60)
+class PatchTensorReaderTest {
+    private static final int PATCH = 24;
+
+    private static final float MEAN[] = {0.485f, 0.456f, 0.406f};
+
+    private static final float STD[] = {0.229f, 0.224f, 0.225f};
+
+    private static final long LOCATIONS[] = {
+        0, 0, 10, 5, 30, 40, 7, 60, 50, 50, 90, 3, 64, 64, 1, 33,
+    };
+
+    private static byte[] shared(PatchTensorReader reader) throws Exception {
+        try (Arena arena = Arena.ofShared()) {
+            return reader.read(LOCATIONS, 0, arena).toArray(JAVA_BYTE);
+        }
+    }
+
+    private static void checkDestinations(PatchTensorReader.Layout layout,
+            PatchTensorReader.DataType type) throws Exception {
+        try (OpenSlide os = SyntheticSlide.open();
+                PatchTensorReader reader = new PatchTensorReader(os, PATCH,
+                        PATCH, layout, type, MEAN, STD, 4)) {
+            byte expected[] = shared(reader);
+            assertEquals(reader.getTensorBytes(LOCATIONS.length / 2),
+                    expected.length);
+
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment dest = reader.read(LOCATIONS, 0, arena);
+                assertArrayEquals(expected, dest.toArray(JAVA_BYTE));
+            }
+
+            MemorySegment auto = reader.read(LOCATIONS, 0, Arena.ofAuto());
+            assertArrayEquals(expected, auto.toArray(JAVA_BYTE));
+
+            long elements = expected.length / type.getSize();
+            MemorySegment heap = type == PatchTensorReader.DataType.FLOAT32
+                    ? MemorySegment.ofArray(new float[(int) elements])
+                    : MemorySegment.ofArray(new byte[(int) elements]);
+            reader.read(LOCATIONS, 0, heap);
+            assertArrayEquals(expected, heap.toArray(JAVA_BYTE));
+        }
+    }
+
+    @Test
+    void float32Nchw() throws Exception {
+        checkDestinations(PatchTensorReader.Layout.NCHW,
+                PatchTensorReader.DataType.FLOAT32);
+    }
+
+    @Test
+    void uint8Nhwc() throws Exception {
+        checkDestinations(PatchTensorReader.Layout.NHWC,
+                PatchTensorReader.DataType.UINT8);
+    }
+}
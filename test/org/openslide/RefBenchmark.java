@@ -0,0 +1,163 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Compares the cost of taking an OpenSlideFFM.Ref for a trivial downcall
+// under the striped reader counts and under the ReentrantReadWriteLock
+// they replaced, at 1 to 128 threads.  Not run by the test suite; after
+// mvn test-compile, run with
+//
+//   java -cp target/classes:target/test-classes \
+//       org.openslide.RefBenchmark [seconds]
+//
+// Each thread repeatedly locks the reference, fetches its segment, and
+// unlocks it.  Results are total lock/unlock pairs per second.
+@SuppressWarnings("try")
+public class RefBenchmark {
+    private static final int THREADS[] = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    private interface Scheme {
+        MemorySegment call();
+    }
+
+    private static final class NullWrapper extends OpenSlideFFM.Ref.Wrapper {
+        NullWrapper() {
+            super(MemorySegment.NULL);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private static final class StripedRef extends OpenSlideFFM.Ref
+            implements Scheme {
+        StripedRef() {
+            super(new NullWrapper());
+        }
+
+        @Override
+        public MemorySegment call() {
+            try (OpenSlideFFM.Ref.ScopedLock l = lock()) {
+                return getSegment();
+            }
+        }
+    }
+
+    // the previous scheme, as it was in OpenSlideFFM.Ref
+    private static final class ReadWriteRef implements Scheme {
+        private final ReentrantReadWriteLock lock =
+                new ReentrantReadWriteLock();
+
+        private final MemorySegment segment = MemorySegment.NULL;
+
+        @Override
+        public MemorySegment call() {
+            lock.readLock().lock();
+            try {
+                if (lock.getReadHoldCount() == 0) {
+                    throw new IllegalStateException(
+                            "Reference lock not held");
+                }
+                return segment;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // returns calls per second
+    private static double measure(Scheme scheme, int threads, long nanos)
+            throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long counts[] = new long[threads];
+        List<Thread> workers = new ArrayList<>();
+        long deadline[] = new long[1];
+        for (int i = 0; i < threads; i++) {
+            int index = i;
+            Thread t = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = deadline[0];
+                long n = 0;
+                do {
+                    // check the clock every so often
+                    for (int j = 0; j < 1024; j++) {
+                        if (scheme.call() != MemorySegment.NULL) {
+                            throw new AssertionError();
+                        }
+                    }
+                    n += 1024;
+                } while (System.nanoTime() < end);
+                counts[index] = n;
+            }, "openslide-bench-" + i);
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        deadline[0] = begin + nanos;
+        start.countDown();
+        for (Thread t : workers) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        long total = 0;
+        for (long n : counts) {
+            total += n;
+        }
+        return total * 1e9 / elapsed;
+    }
+
+    public static void main(String args[]) throws InterruptedException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+        long nanos = (long) (seconds * 1e9);
+        StripedRef striped = new StripedRef();
+        ReadWriteRef readWrite = new ReadWriteRef();
+
+        // warm up both paths
+        measure(striped, 4, nanos / 2);
+        measure(readWrite, 4, nanos / 2);
+
+        System.out.printf("%7s %16s %16s %8s\n", "threads", "rwlock/s",
+                "striped/s", "speedup");
+        for (int threads : THREADS) {
+            double old = measure(readWrite, threads, nanos);
+            double cur = measure(striped, threads, nanos);
+            System.out.printf("%7d %16.0f %16.0f %7.1fx\n", threads, old, cur,
+                    cur / old);
+        }
+        striped.close();
+    }
+}
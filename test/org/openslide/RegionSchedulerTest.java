@@ -0,0 +1,206 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(60)
+class RegionSchedulerTest {
+    private static final BufferedImage IMAGE = new BufferedImage(1, 1,
+            BufferedImage.TYPE_INT_ARGB_PRE);
+
+    // a thread per task, which quietly dies if the task throws
+    private static final Executor THREADS = r -> {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        t.setUncaughtExceptionHandler((thread, e) -> {});
+        t.start();
+    };
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    // occupy a worker until the returned latch is released
+    private static CountDownLatch block(RegionScheduler scheduler)
+            throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(() -> {
+            started.countDown();
+            await(release);
+            return IMAGE;
+        }, RegionScheduler.PRIORITY_VISIBLE);
+        started.await();
+        return release;
+    }
+
+    private static BufferedImage get(CompletableFuture<BufferedImage> f)
+            throws Exception {
+        return f.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void priorityOrder() throws Exception {
+        try (RegionScheduler scheduler = new RegionScheduler(1)) {
+            CountDownLatch release = block(scheduler);
+            List<Integer> order = new ArrayList<>();
+            int priorities[] = {0, 10, 5, 10, 0};
+            List<CompletableFuture<BufferedImage>> futures =
+                    new ArrayList<>();
+            for (int i = 0; i < priorities.length; i++) {
+                int id = i;
+                futures.add(scheduler.submit(() -> {
+                    synchronized (order) {
+                        order.add(id);
+                    }
+                    return IMAGE;
+                }, priorities[i]));
+            }
+            assertEquals(priorities.length, scheduler.getQueueDepth());
+            release.countDown();
+            for (CompletableFuture<BufferedImage> f : futures) {
+                assertSame(IMAGE, get(f));
+            }
+            synchronized (order) {
+                assertEquals(List.of(1, 3, 2, 0, 4), order);
+            }
+            assertEquals(priorities.length + 1, scheduler.getCompleted());
+        }
+    }
+
+    @Test
+    void cancelRemovesQueuedRequest() throws Exception {
+        try (RegionScheduler scheduler = new RegionScheduler(1)) {
+            CountDownLatch release = block(scheduler);
+            CountDownLatch ran = new CountDownLatch(1);
+            CompletableFuture<BufferedImage> f = scheduler.submit(() -> {
+                ran.countDown();
+                return IMAGE;
+            }, RegionScheduler.PRIORITY_PREFETCH);
+            assertTrue(f.cancel(false));
+            assertEquals(0, scheduler.getQueueDepth());
+            assertEquals(1, scheduler.getCancelled());
+            release.countDown();
+            // a later request still runs, and the cancelled one doesn't
+            assertSame(IMAGE, get(scheduler.submit(() -> IMAGE,
+                    RegionScheduler.PRIORITY_PREFETCH)));
+            assertEquals(1, ran.getCount());
+        }
+    }
+
+    @Test
+    void exceptionFailsRequest() throws Exception {
+        try (RegionScheduler scheduler = new RegionScheduler(1)) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> get(scheduler.submit(() -> {
+                        throw new IOException("test");
+                    }, RegionScheduler.PRIORITY_VISIBLE)));
+            assertTrue(e.getCause() instanceof IOException);
+            assertSame(IMAGE, get(scheduler.submit(() -> IMAGE,
+                    RegionScheduler.PRIORITY_VISIBLE)));
+        }
+    }
+
+    @Test
+    void errorKeepsWorkerSlot() throws Exception {
+        try (RegionScheduler scheduler = new RegionScheduler(THREADS, 1)) {
+            // queue requests behind one that throws an Error, so they
+            // can only run if its worker hands over the queue
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<BufferedImage> failing = scheduler.submit(
+                    () -> {
+                        await(release);
+                        throw new StackOverflowError("test");
+                    }, RegionScheduler.PRIORITY_VISIBLE);
+            List<CompletableFuture<BufferedImage>> queued = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                queued.add(scheduler.submit(() -> IMAGE,
+                        RegionScheduler.PRIORITY_PREFETCH));
+            }
+            release.countDown();
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> get(failing));
+            assertTrue(e.getCause() instanceof StackOverflowError);
+            for (CompletableFuture<BufferedImage> f : queued) {
+                assertSame(IMAGE, get(f));
+            }
+            // and the slot is free for new requests
+            for (int i = 0; i < 3; i++) {
+                assertSame(IMAGE, get(scheduler.submit(() -> IMAGE,
+                        RegionScheduler.PRIORITY_VISIBLE)));
+            }
+        }
+    }
+
+    @Test
+    void closeCancelsQueuedRequests() throws Exception {
+        RegionScheduler scheduler = new RegionScheduler(1);
+        CountDownLatch release = block(scheduler);
+        List<CompletableFuture<BufferedImage>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            queued.add(scheduler.submit(() -> IMAGE,
+                    RegionScheduler.PRIORITY_VISIBLE));
+        }
+        scheduler.close();
+        release.countDown();
+        for (CompletableFuture<BufferedImage> f : queued) {
+            assertTrue(f.isCancelled());
+        }
+        assertEquals(3, scheduler.getCancelled());
+        assertThrows(IllegalStateException.class, () -> scheduler.submit(
+                () -> IMAGE, RegionScheduler.PRIORITY_VISIBLE));
+    }
+
+    @Test
+    void rejectedWorkerLeavesNothingQueued() {
+        // as when close() shuts down the executor between submit()'s
+        // closed check and its worker start
+        Executor rejecting = r -> {
+            throw new RejectedExecutionException();
+        };
+        RegionScheduler scheduler = new RegionScheduler(rejecting, 1);
+        assertThrows(RejectedExecutionException.class, () ->
+                scheduler.submit(() -> IMAGE,
+                RegionScheduler.PRIORITY_VISIBLE));
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(1, scheduler.getCancelled());
+    }
+}
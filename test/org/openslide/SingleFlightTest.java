@@ -0,0 +1,171 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(60)
+class SingleFlightTest {
+    private static final TileKey KEY = new TileKey("hash", 0, 0, 0, 4, 4);
+
+    private static final int PIXELS = 16;
+
+    private static final int WAITERS = 4;
+
+    private final SingleFlight flights = new SingleFlight();
+
+    private final AtomicInteger decodes = new AtomicInteger();
+
+    // readers that joined the decode in progress
+    private final List<Reader> readers = new ArrayList<>();
+
+    // a reader on another thread
+    private final class Reader extends Thread {
+        final int dest[] = new int[PIXELS];
+
+        boolean decoded;
+
+        Throwable error;
+
+        @Override
+        public void run() {
+            try {
+                decoded = flights.read(KEY, MemorySegment.ofArray(dest),
+                        () -> decodes.incrementAndGet());
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+    }
+
+    // start readers, and wait until they've joined the flight in progress
+    private void join() {
+        for (int i = 0; i < WAITERS; i++) {
+            Reader reader = new Reader();
+            reader.start();
+            while (reader.isAlive()
+                    && reader.getState() != Thread.State.WAITING) {
+                Thread.onSpinWait();
+            }
+            readers.add(reader);
+        }
+    }
+
+    // decode into dest on this thread, letting the decode finish once
+    // the readers have joined it.  Returns what the decode threw.
+    private Throwable lead(int dest[], SingleFlight.Decoder decoder)
+            throws Exception {
+        boolean decoded = false;
+        Throwable error = null;
+        try {
+            decoded = flights.read(KEY, MemorySegment.ofArray(dest), () -> {
+                decodes.incrementAndGet();
+                join();
+                decoder.decode();
+            });
+        } catch (Throwable e) {
+            error = e;
+        }
+        for (Reader reader : readers) {
+            reader.join();
+        }
+        assertEquals(WAITERS, readers.size());
+        assertEquals(1, decodes.get());
+        if (error == null) {
+            assertTrue(decoded);
+        }
+        return error;
+    }
+
+    @Test
+    void waitersCopyResult() throws Exception {
+        int dest[] = new int[PIXELS];
+        assertNull(lead(dest, () -> Arrays.fill(dest, 7)));
+        for (Reader reader : readers) {
+            assertNull(reader.error);
+            assertFalse(reader.decoded);
+            assertArrayEquals(dest, reader.dest);
+        }
+    }
+
+    @Test
+    void uniqueReadDecodes() throws Exception {
+        int dest[] = new int[PIXELS];
+        assertTrue(flights.read(KEY, MemorySegment.ofArray(dest),
+                () -> MemorySegment.ofArray(dest).fill((byte) 1)));
+        assertEquals(0x01010101, MemorySegment.ofArray(dest).get(JAVA_INT,
+                0));
+    }
+
+    // the decode's exception reaches the decoding thread and every
+    // waiter, and a later read starts a new decode
+    private void checkFailure(Throwable thrown) throws Exception {
+        Throwable error = lead(new int[PIXELS], () -> {
+            if (thrown instanceof IOException) {
+                throw (IOException) thrown;
+            } else if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            }
+            throw (Error) thrown;
+        });
+        assertSame(thrown, error);
+        for (Reader reader : readers) {
+            if (thrown instanceof IOException) {
+                // rethrown with the waiter's stack
+                assertTrue(reader.error instanceof IOException);
+                assertSame(thrown, reader.error.getCause());
+            } else {
+                assertSame(thrown, reader.error);
+            }
+        }
+
+        int dest[] = new int[PIXELS];
+        assertTrue(flights.read(KEY, MemorySegment.ofArray(dest),
+                () -> decodes.incrementAndGet()));
+        assertEquals(2, decodes.get());
+    }
+
+    @Test
+    void ioExceptionReachesEveryone() throws Exception {
+        checkFailure(new IOException("test"));
+    }
+
+    @Test
+    void runtimeExceptionReachesEveryone() throws Exception {
+        checkFailure(new IllegalStateException("test"));
+    }
+
+    @Test
+    void errorReachesEveryone() throws Exception {
+        checkFailure(new StackOverflowError("test"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SlideIndexTest {
+    private static final String LEVELS = "1000x800:1.0,250x200:4.0";
+
+    @TempDir
+    Path dir;
+
+    // an index line with the given escaped path
+    private static String line(String path) {
+        return path + "\t1700000000000\t12345\taperio\tabc123\t0.25\t0.26"
+                + "\t10\t20\t900\t700\t" + LEVELS;
+    }
+
+    private static SlideIndex.Entry roundTrip(String line)
+            throws IOException {
+        SlideIndex.Entry entry = SlideIndex.Entry.parse(line);
+        assertEquals(line, entry.toLine());
+        return entry;
+    }
+
+    @Test
+    void fields() throws Exception {
+        SlideIndex.Entry entry = roundTrip(line("/slides/a.svs"));
+        assertEquals("/slides/a.svs", entry.getPath());
+        assertEquals(1700000000000L, entry.getModified());
+        assertEquals(12345, entry.getSize());
+        assertEquals("aperio", entry.getVendor());
+        assertEquals("abc123", entry.getQuickhash1());
+        assertEquals("0.25", entry.getMppX());
+        assertEquals("0.26", entry.getMppY());
+        assertEquals("10", entry.getBoundsX());
+        assertEquals("20", entry.getBoundsY());
+        assertEquals("900", entry.getBoundsWidth());
+        assertEquals("700", entry.getBoundsHeight());
+        assertEquals(2, entry.getLevelCount());
+        assertEquals(250, entry.getLevelWidth(1));
+        assertEquals(200, entry.getLevelHeight(1));
+        assertEquals(4.0, entry.getLevelDownsample(1));
+    }
+
+    @Test
+    void escapedPaths() throws Exception {
+        assertEquals("/a\tb", roundTrip(line("/a\\tb")).getPath());
+        assertEquals("/a\nb\rc", roundTrip(line("/a\\nb\\rc")).getPath());
+        assertEquals("C:\\slides\\a.svs",
+                roundTrip(line("C:\\\\slides\\\\a.svs")).getPath());
+        // an escaped backslash followed by a letter isn't an escape
+        assertEquals("/a\\tb", roundTrip(line("/a\\\\tb")).getPath());
+        assertEquals("/a\\", roundTrip(line("/a\\\\")).getPath());
+    }
+
+    @Test
+    void nullFields() throws Exception {
+        SlideIndex.Entry entry = roundTrip(
+                "/a.svs\t1\t2\t\t\t\t\t\t\t\t\t");
+        assertNull(entry.getVendor());
+        assertNull(entry.getQuickhash1());
+        assertNull(entry.getMppX());
+        assertNull(entry.getBoundsHeight());
+        assertEquals(0, entry.getLevelCount());
+    }
+
+    @Test
+    void malformedLines() {
+        for (String line : List.of(
+                // too few fields
+                "/a.svs\t1\t2",
+                // not a number
+                "/a.svs\tx\t2\t\t\t\t\t\t\t\t\t",
+                // bad level
+                "/a.svs\t1\t2\t\t\t\t\t\t\t\t\t1000x800",
+                // unknown escape
+                line("/a\\qb"),
+                // trailing lone backslash
+                line("/a\\"))) {
+            IOException e = assertThrows(IOException.class,
+                    () -> SlideIndex.Entry.parse(line), line);
+            assertTrue(e.getMessage().startsWith("Malformed index line"));
+        }
+    }
+
+    @Test
+    void readFile() throws Exception {
+        Path file = dir.resolve("index.tsv");
+        assertTrue(SlideIndex.read(file).isEmpty());
+
+        Files.write(file, List.of(SlideIndex.HEADER, line("/a.svs"),
+                line("/b\\tc.svs")), StandardCharsets.UTF_8);
+        Map<String, SlideIndex.Entry> entries = SlideIndex.read(file);
+        assertEquals(2, entries.size());
+        assertEquals("/b\tc.svs", entries.get("/b\tc.svs").getPath());
+
+        Files.write(file, List.of("not an index"), StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> SlideIndex.read(file));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+// Opens the synthetic slide built into OpenSlide, which is enabled by
+// OPENSLIDE_DEBUG=synthetic.  Tests that call open() are skipped if the
+// library can't be loaded or the synthetic slide isn't enabled.
+final class SyntheticSlide {
+    private static final boolean AVAILABLE = available();
+
+    private SyntheticSlide() {
+    }
+
+    private static boolean available() {
+        String debug = System.getenv("OPENSLIDE_DEBUG");
+        if (debug == null || !debug.contains("synthetic")) {
+            return false;
+        }
+        try {
+            OpenSlide.getLibraryVersion();
+            return true;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    static OpenSlide open(OpenSlide.OpenOption... options)
+            throws IOException {
+        assumeTrue(AVAILABLE, "OpenSlide synthetic slide not available");
+        return new OpenSlide(new File(""), options);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import java.lang.foreign.MemorySegment;
+
+// Tiles for the cache tests, with pixels that identify the key they were
+// stored under.
+final class TestTiles {
+    private TestTiles() {
+    }
+
+    static TileKey key(long x, long y, int size) {
+        return new TileKey("hash", 0, x, y, size, size);
+    }
+
+    static int[] pixels(TileKey key) {
+        int buf[] = new int[key.getWidth() * key.getHeight()];
+        int seed = key.hashCode();
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = seed + i;
+        }
+        return buf;
+    }
+
+    static void put(OpenSlideTileCache cache, TileKey key) {
+        cache.put(key, MemorySegment.ofArray(pixels(key)));
+    }
+
+    static void put(OpenSlideDiskCache cache, TileKey key) {
+        cache.put(key, MemorySegment.ofArray(pixels(key)));
+    }
+
+    // returns null on a miss
+    static int[] get(OpenSlideTileCache cache, TileKey key) {
+        int buf[] = new int[key.getWidth() * key.getHeight()];
+        if (!cache.get(key, MemorySegment.ofArray(buf))) {
+            return null;
+        }
+        return buf;
+    }
+
+    // returns null on a miss
+    static int[] get(OpenSlideDiskCache cache, TileKey key) {
+        int buf[] = new int[key.getWidth() * key.getHeight()];
+        if (!cache.get(key, MemorySegment.ofArray(buf))) {
+            return null;
+        }
+        return buf;
+    }
+}
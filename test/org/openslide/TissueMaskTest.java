@@ -0,0 +1,133 @@
+/*
+ *  OpenSlide, a library for reading whole slide image files
+ *
+ *  Copyright (c) 2026 Benjamin Gilbert
+ *  All rights reserved.
+ *
+ *  OpenSlide is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, version 2.1.
+ *
+ *  OpenSlide is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with OpenSlide. If not, see
+ *  <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openslide;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TissueMaskTest {
+    private static final int RED = 0xffff0000;
+
+    private static final int WHITE = 0xffffffff;
+
+    // 4 x 2 mask of a 400 x 200 slide, so each mask pixel is 100 x 100
+    // level 0 pixels.  Tissue is marked with #.
+    //
+    //   # . # #
+    //   . . # .
+    private static TissueMask mask() {
+        int pixels[] = {
+            RED, WHITE, RED, RED,
+            WHITE, WHITE, RED, WHITE,
+        };
+        return TissueMask.compute(pixels, 4, 2, 400, 200, 0xffffff,
+                TissueMask.Method.FIXED, 0.5);
+    }
+
+    @Test
+    void otsuSplitsBimodalHistogram() {
+        int histogram[] = new int[256];
+        histogram[10] = 100;
+        histogram[200] = 50;
+        int cutoff = TissueMask.otsu(histogram, 150);
+        assertTrue(cutoff > 10 && cutoff <= 200, "cutoff " + cutoff);
+
+        // noise around both peaks moves the cutoff between them
+        histogram[20] = 30;
+        histogram[180] = 30;
+        cutoff = TissueMask.otsu(histogram, 210);
+        assertTrue(cutoff > 20 && cutoff <= 180, "cutoff " + cutoff);
+    }
+
+    @Test
+    void otsuOfUniformHistogram() {
+        // nothing to separate
+        int histogram[] = new int[256];
+        histogram[42] = 1000;
+        assertEquals(0, TissueMask.otsu(histogram, 1000));
+    }
+
+    @Test
+    void otsuFloorsThreshold() {
+        int pixels[] = new int[100];
+        for (int i = 0; i < pixels.length; i++) {
+            // pale and saturated pixels
+            pixels[i] = i % 2 == 0 ? 0xfff0e8e8 : 0xff802040;
+        }
+        TissueMask otsu = TissueMask.compute(pixels, 10, 10, 10, 10,
+                0xffffff, TissueMask.Method.OTSU, 0);
+        assertTrue(otsu.getThreshold() > 0);
+        assertEquals(0.5, otsu.getCoverage(0, 0, 10, 10));
+        // a fixed threshold above the Otsu one wins
+        TissueMask high = TissueMask.compute(pixels, 10, 10, 10, 10,
+                0xffffff, TissueMask.Method.OTSU, 0.9);
+        assertEquals(Math.ceil(0.9 * 255) / 255, high.getThreshold());
+        assertEquals(0.0, high.getCoverage(0, 0, 10, 10));
+    }
+
+    @Test
+    void transparentPixelsAreBackground() {
+        int pixels[] = {0x00ff0000, RED};
+        TissueMask mask = TissueMask.compute(pixels, 2, 1, 2, 1, 0xffffff,
+                TissueMask.Method.FIXED, 0.5);
+        assertFalse(mask.isTissue(0, 0));
+        assertTrue(mask.isTissue(1, 0));
+    }
+
+    @Test
+    void integralCounts() {
+        TissueMask mask = mask();
+        boolean expected[][] = {
+            {true, false, true, true},
+            {false, false, true, false},
+        };
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(expected[y][x], mask.isTissue(x, y),
+                        "(" + x + ", " + y + ")");
+            }
+        }
+        assertEquals(4 / 8.0, mask.getCoverage(0, 0, 400, 200));
+        assertEquals(1.0, mask.getCoverage(200, 0, 100, 200));
+        assertEquals(0.0, mask.getCoverage(100, 0, 100, 200));
+        assertEquals(3 / 4.0, mask.getCoverage(200, 0, 200, 200));
+        // partial mask pixels round outward
+        assertEquals(1.0, mask.getCoverage(250, 50, 10, 10));
+        assertEquals(2 / 4.0, mask.getCoverage(150, 50, 100, 100));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> mask.isTissue(4, 0));
+    }
+
+    @Test
+    void coverageClampsToMask() {
+        TissueMask mask = mask();
+        // overhanging regions count only the part inside the slide
+        assertEquals(4 / 8.0, mask.getCoverage(-1000, -1000, 3000, 3000));
+        assertEquals(2 / 2.0, mask.getCoverage(300, -50, 1000, 100));
+        // entirely outside or empty
+        assertEquals(0.0, mask.getCoverage(400, 0, 100, 100));
+        assertEquals(0.0, mask.getCoverage(-200, 0, 100, 100));
+        assertEquals(0.0, mask.getCoverage(0, 200, 100, 100));
+        assertEquals(0.0, mask.getCoverage(0, 0, 0, 100));
+    }
+}